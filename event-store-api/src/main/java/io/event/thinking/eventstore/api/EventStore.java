@@ -1,5 +1,6 @@
 package io.event.thinking.eventstore.api;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
@@ -15,7 +16,9 @@ public interface EventStore {
     /**
      * Queries the Event Store for events based on the given {@code criteria} starting from the given {@code sequence}.
      * At the time this query is issued, the Event Store captures the consistencyMarker of itself and packages it as a
-     * {@link MarkedEvents#consistencyMarker()} in the resulting series of events.
+     * {@link MarkedEvents#consistencyMarker()} in the resulting series of events. The series is bounded by the
+     * consistencyMarker: events appended after the query is issued are not emitted, even if they are appended before
+     * the series is subscribed to.
      *
      * @param fromSequence the inclusive starting sequence of the query
      * @param criteria     the criteria used to filter events
@@ -23,6 +26,119 @@ public interface EventStore {
      */
     MarkedEvents read(long fromSequence, Criteria criteria);
 
+    /**
+     * Queries the Event Store like {@link #read(long, Criteria)}, but emits events in batches of up to
+     * {@code batchSize} events. Meant for large reads, like sourcing a model from many events, where emitting each
+     * event separately dominates the cost of the read.
+     * <p>
+     * The default implementation buffers events of {@link #read(long, Criteria)}. Implementations should rather
+     * collect batches straight from their storage.
+     * </p>
+     *
+     * @param fromSequence the inclusive starting sequence of the query
+     * @param criteria     the criteria used to filter events
+     * @param batchSize    the maximum number of events in a batch
+     * @return batches of events with the current consistencyMarker of the Event Store
+     */
+    default MarkedEventBatches readBatches(long fromSequence, Criteria criteria, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        var events = read(fromSequence, criteria);
+        return new MarkedEventBatches(events.consistencyMarker(), events.flux().buffer(batchSize));
+    }
+
+    /**
+     * Queries the Event Store like {@link #read(long, Criteria)}, but reads only sequences and indices of events.
+     * Payloads are loaded on demand, when the {@link IndexedEvent#payload()} handle of an event is called. Meant for
+     * readers which decide from indices alone, or which need payloads of a few events only. A payload can still be
+     * loaded after the resulting series completes.
+     * <p>
+     * The default implementation wraps events of {@link #read(long, Criteria)}, payloads included. Implementations
+     * should rather skip reading payloads.
+     * </p>
+     *
+     * @param fromSequence the inclusive starting sequence of the query
+     * @param criteria     the criteria used to filter events
+     * @return events without payloads with the current consistencyMarker of the Event Store
+     */
+    default MarkedIndexedEvents readIndexed(long fromSequence, Criteria criteria) {
+        var events = read(fromSequence, criteria);
+        return new MarkedIndexedEvents(events.consistencyMarker(), events.flux().map(IndexedEvent::indexedEvent));
+    }
+
+    /**
+     * Counts events in the Event Store matching the given {@code criteria} starting from the given {@code sequence}.
+     * Events appended up to the subscription to the resulting {@link Mono} are counted.
+     * <p>
+     * The default implementation counts events of {@link #read(long, Criteria)}. Implementations should rather answer
+     * from their indices, without reading the events.
+     * </p>
+     *
+     * @param fromSequence the inclusive starting sequence of the query
+     * @param criteria     the criteria used to filter events
+     * @return the number of matching events
+     */
+    default Mono<Long> count(long fromSequence, Criteria criteria) {
+        return read(fromSequence, criteria).flux().count();
+    }
+
+    /**
+     * Checks whether there is any event in the Event Store matching the given {@code criteria} starting from the given
+     * {@code sequence}. Events appended up to the subscription to the resulting {@link Mono} are considered.
+     * <p>
+     * The default implementation looks for the first event of {@link #read(long, Criteria)}. Implementations should
+     * rather answer from their indices, without reading the events.
+     * </p>
+     *
+     * @param fromSequence the inclusive starting sequence of the query
+     * @param criteria     the criteria used to filter events
+     * @return {@code true} if there is a matching event, {@code false} otherwise
+     */
+    default Mono<Boolean> exists(long fromSequence, Criteria criteria) {
+        return read(fromSequence, criteria).flux().hasElements();
+    }
+
+    /**
+     * Queries the Event Store for the latest events based on the given {@code criteria}, going backward from the given
+     * {@code sequence}. Events are emitted in descending order of their global sequence, and at most {@code limit} of
+     * them. Meant for decisions depending only on the latest matching events, which are then found without visiting
+     * older ones. Like with {@link #read(long, Criteria)}, the consistencyMarker of the Event Store is captured and
+     * packaged in the resulting series of events.
+     *
+     * @param fromSequence the inclusive sequence to start the query from, going backward. Sequences beyond the
+     *                     consistencyMarker start the query from the latest event.
+     * @param criteria     the criteria used to filter events
+     * @param limit        the maximum number of events to emit
+     * @return at most {@code limit} events in descending order with the current consistencyMarker of the Event Store
+     */
+    MarkedEvents readBackward(long fromSequence, Criteria criteria, int limit);
+
+    /**
+     * Queries the Event Store for at most {@code limit} latest events based on the given {@code criteria}, in
+     * descending order, with the current consistencyMarker.
+     *
+     * @param criteria the criteria used to filter events
+     * @param limit    the maximum number of events to emit
+     * @return at most {@code limit} events in descending order with the current consistencyMarker of the Event Store
+     * @see #readBackward(long, Criteria, int)
+     */
+    default MarkedEvents readBackward(Criteria criteria, int limit) {
+        return readBackward(Long.MAX_VALUE, criteria, limit);
+    }
+
+    /**
+     * Streams events based on the given {@code criteria} starting from the given {@code sequence}, indefinitely. Events
+     * already in the Event Store are emitted first, followed by events appended later, as they get appended. Each
+     * matching event is emitted exactly once, in the order of the global sequence, and only on demand of the
+     * subscriber. The stream completes only when cancelled.
+     *
+     * @param fromSequence the inclusive starting sequence of the stream
+     * @param criteria     the criteria used to filter events
+     * @return an infinite stream of events
+     */
+    Flux<SequencedEvent> stream(long fromSequence, Criteria criteria);
+
     /**
      * Conditionally appends the {@code event} to this Event Store depending on the provided
      * {@code consistencyCondition}.
@@ -0,0 +1,51 @@
+package io.event.thinking.eventstore.api;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static io.event.thinking.eventstore.api.Event.event;
+import static io.event.thinking.eventstore.api.SequencedEvent.sequencedEvent;
+
+/**
+ * An event read without its payload: the sequence assigned by the Event Store and the indices of the event, together
+ * with a handle loading the payload only when asked for. Meant for readers which look at indices first and need the
+ * payload of some events only, if any.
+ *
+ * @param sequence the sequence of the event
+ * @param indices  associated concepts with the event
+ * @param payload  loads the payload of the event each time it is called
+ */
+public record IndexedEvent(long sequence, Set<Index> indices, Supplier<byte[]> payload) {
+
+    /**
+     * Factory method for {@link IndexedEvent}.
+     *
+     * @param sequence the sequence of the event
+     * @param indices  associated concepts with the event
+     * @param payload  loads the payload of the event
+     * @return newly created {@link IndexedEvent}
+     */
+    public static IndexedEvent indexedEvent(long sequence, Set<Index> indices, Supplier<byte[]> payload) {
+        return new IndexedEvent(sequence, indices, payload);
+    }
+
+    /**
+     * Factory method for {@link IndexedEvent} of an already loaded {@code sequencedEvent}.
+     *
+     * @param sequencedEvent the event with its sequence
+     * @return newly created {@link IndexedEvent}
+     */
+    public static IndexedEvent indexedEvent(SequencedEvent sequencedEvent) {
+        var event = sequencedEvent.event();
+        return new IndexedEvent(sequencedEvent.sequence(), event.indices(), event::payload);
+    }
+
+    /**
+     * Loads the payload and returns the whole event.
+     *
+     * @return the event with its sequence
+     */
+    public SequencedEvent load() {
+        return sequencedEvent(sequence, event(indices, payload.get()));
+    }
+}
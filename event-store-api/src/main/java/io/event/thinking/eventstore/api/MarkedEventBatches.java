@@ -0,0 +1,18 @@
+package io.event.thinking.eventstore.api;
+
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Like {@link MarkedEvents}, a series of events marked with the consistencyMarker of the Event Store at the time they
+ * were requested, but emitted in batches of consecutive events. A large read then pays for a single signal per batch
+ * instead of one per event.
+ *
+ * @param consistencyMarker the consistencyMarker determined by the Event Store. Could be used as
+ *                          {@link ConsistencyCondition#consistencyMarker()}.
+ * @param flux              non-empty batches of events ordered by their sequences
+ */
+public record MarkedEventBatches(long consistencyMarker, Flux<List<SequencedEvent>> flux) {
+
+}
@@ -0,0 +1,16 @@
+package io.event.thinking.eventstore.api;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Like {@link MarkedEvents}, a series of events marked with the consistencyMarker of the Event Store at the time they
+ * were requested, but read without their payloads. Each payload is loaded only when the {@link IndexedEvent#payload()}
+ * of its event is called.
+ *
+ * @param consistencyMarker the consistencyMarker determined by the Event Store. Could be used as
+ *                          {@link ConsistencyCondition#consistencyMarker()}.
+ * @param flux              series of events ordered by their sequences
+ */
+public record MarkedIndexedEvents(long consistencyMarker, Flux<IndexedEvent> flux) {
+
+}
@@ -0,0 +1,69 @@
+package io.event.thinking.eventstore.benchmark;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.inmemory.InMemoryEventStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static io.event.thinking.eventstore.api.ConsistencyCondition.consistencyCondition;
+import static io.event.thinking.eventstore.api.Criteria.anyOf;
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Event.event;
+import static io.event.thinking.eventstore.api.Index.index;
+
+/**
+ * Measures conditional append throughput of concurrent appenders, which the single-thread appender validates and
+ * commits in batches. Each benchmark thread appends to its own course, so consistency conditions never conflict.
+ * <p>
+ * Run with {@code java -jar event-store-benchmark/target/benchmarks.jar AppendBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AppendBenchmark {
+
+    private InMemoryEventStore eventStore;
+
+    @Setup
+    public void setUp() {
+        eventStore = new InMemoryEventStore();
+    }
+
+    @State(Scope.Thread)
+    public static class Course {
+
+        private final String courseId = UUID.randomUUID().toString();
+        private final Criteria criteria = anyOf(allOf(index("eventType", "CourseCapacityChanged"),
+                                                      index("courseId", courseId)));
+        private final Event event = event(new byte[64],
+                                          index("eventType", "CourseCapacityChanged"),
+                                          index("courseId", courseId));
+        private long consistencyMarker;
+    }
+
+    @Benchmark
+    public long appendToOwnCourse(Course course) {
+        long sequence = eventStore.append(course.event, consistencyCondition(course.consistencyMarker, course.criteria))
+                                  .block();
+        course.consistencyMarker = sequence + 1;
+        return sequence;
+    }
+}
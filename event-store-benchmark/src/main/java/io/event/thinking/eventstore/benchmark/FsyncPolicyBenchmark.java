@@ -0,0 +1,104 @@
+package io.event.thinking.eventstore.benchmark;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.file.FileEventStore;
+import io.event.thinking.eventstore.file.FsyncPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static io.event.thinking.eventstore.api.ConsistencyCondition.consistencyCondition;
+import static io.event.thinking.eventstore.api.Criteria.anyOf;
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Event.event;
+import static io.event.thinking.eventstore.api.Index.index;
+import static io.event.thinking.eventstore.file.FileEventStoreConfiguration.defaultConfiguration;
+
+/**
+ * Compares conditional append throughput of the {@link FileEventStore} under each {@link FsyncPolicy}. Each benchmark
+ * thread appends to its own course, so consistency conditions never conflict, and concurrent appends share forces.
+ * Segment files are written to a temporary directory, set the {@code java.io.tmpdir} system property to benchmark a
+ * specific disk.
+ * <p>
+ * Run with {@code java -jar event-store-benchmark/target/benchmarks.jar FsyncPolicyBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FsyncPolicyBenchmark {
+
+    @Param({"everyBatch", "every10ms", "operatingSystem"})
+    public String fsyncPolicy;
+
+    private Path directory;
+    private FileEventStore eventStore;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("fsync-policy-benchmark");
+        eventStore = new FileEventStore(defaultConfiguration(directory).withFsyncPolicy(policy()));
+    }
+
+    private FsyncPolicy policy() {
+        return switch (fsyncPolicy) {
+            case "everyBatch" -> FsyncPolicy.everyBatch();
+            case "every10ms" -> FsyncPolicy.every(Duration.ofMillis(10));
+            case "operatingSystem" -> FsyncPolicy.operatingSystem();
+            default -> throw new IllegalArgumentException("Unknown fsync policy " + fsyncPolicy);
+        };
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        eventStore.close();
+        try (var files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Course {
+
+        private final String courseId = UUID.randomUUID().toString();
+        private final Criteria criteria = anyOf(allOf(index("eventType", "CourseCapacityChanged"),
+                                                      index("courseId", courseId)));
+        private final Event event = event(new byte[64],
+                                          index("eventType", "CourseCapacityChanged"),
+                                          index("courseId", courseId));
+        private long consistencyMarker;
+    }
+
+    @Benchmark
+    public long appendToOwnCourse(Course course) {
+        long sequence = eventStore.append(course.event, consistencyCondition(course.consistencyMarker, course.criteria))
+                                  .block();
+        course.consistencyMarker = sequence + 1;
+        return sequence;
+    }
+}
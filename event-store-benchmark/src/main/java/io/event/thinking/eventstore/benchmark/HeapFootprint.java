@@ -0,0 +1,84 @@
+package io.event.thinking.eventstore.benchmark;
+
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.inmemory.InMemoryEventStore;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+import static io.event.thinking.eventstore.api.Event.event;
+
+/**
+ * Reports the heap used per stored event by the {@link InMemoryEventStore}, compared to a
+ * {@link ConcurrentSkipListMap} keyed by sequence, which the store used before. All events share the same instance
+ * without indices, so only the overhead of the log structure is measured. Each structure is measured in a separate
+ * JVM, so that heap left over from one measurement does not affect the other one.
+ * <p>
+ * Run with {@code java -cp event-store-benchmark/target/benchmarks.jar
+ * io.event.thinking.eventstore.benchmark.HeapFootprint [numberOfEvents]}.
+ * </p>
+ */
+public class HeapFootprint {
+
+    private static final int TRANSACTION_SIZE = 1_000;
+
+    /**
+     * Keeps the measured structure strongly reachable while the heap is measured.
+     */
+    private static Object retained;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        if (args.length > 1) {
+            measure(args[1], count);
+            return;
+        }
+        for (String structure : List.of("ConcurrentSkipListMap", "InMemoryEventStore")) {
+            var java = ProcessHandle.current().info().command().orElse("java");
+            new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                               HeapFootprint.class.getName(), String.valueOf(count), structure)
+                    .inheritIO()
+                    .start()
+                    .waitFor();
+        }
+    }
+
+    private static void measure(String structure, int count) {
+        var event = event(new byte[0]);
+        Supplier<Object> factory = switch (structure) {
+            case "ConcurrentSkipListMap" -> () -> {
+                var skipList = new ConcurrentSkipListMap<Long, Event>();
+                for (long i = 0; i < count; i++) {
+                    skipList.put(i, event);
+                }
+                return skipList;
+            };
+            case "InMemoryEventStore" -> () -> {
+                var eventStore = new InMemoryEventStore();
+                var transaction = Collections.nCopies(TRANSACTION_SIZE, event);
+                for (int i = 0; i < count / TRANSACTION_SIZE; i++) {
+                    eventStore.append(transaction)
+                              .block();
+                }
+                return eventStore;
+            };
+            default -> throw new IllegalArgumentException("Unknown structure " + structure);
+        };
+
+        long before = usedHeap();
+        retained = factory.get();
+        long after = usedHeap();
+        System.out.printf("%-22s %.2f bytes per event%n", structure + ":", (double) (after - before) / count);
+    }
+
+    private static long usedHeap() {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
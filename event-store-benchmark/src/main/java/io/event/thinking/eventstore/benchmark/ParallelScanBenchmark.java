@@ -0,0 +1,71 @@
+package io.event.thinking.eventstore.benchmark;
+
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.inmemory.InMemoryEventStore;
+import io.event.thinking.eventstore.inmemory.InMemoryEventStoreConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.event.thinking.eventstore.api.Event.event;
+import static io.event.thinking.eventstore.api.Index.index;
+
+/**
+ * Measures a full-history read of 1 000 000 events, scanned sequentially ({@code chunkSize} of {@code 0}) and in
+ * parallel chunks. Parallel scans are expected to scale with the number of cores.
+ * <p>
+ * Run with {@code java -jar event-store-benchmark/target/benchmarks.jar ParallelScanBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParallelScanBenchmark {
+
+    private static final int EVENTS = 1_000_000;
+
+    @Param({"0", "65536"})
+    public int chunkSize;
+
+    private InMemoryEventStore eventStore;
+
+    @Setup
+    public void setUp() {
+        eventStore = new InMemoryEventStore(InMemoryEventStoreConfiguration.defaultConfiguration()
+                                                                           .withParallelScanChunkSize(chunkSize));
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++) {
+            events.add(event(new byte[64],
+                             index("eventType", "StudentSubscribed"),
+                             index("courseId", "course-1"),
+                             index("studentId", "student-" + i % 1_000)));
+            if (events.size() == 1_000) {
+                eventStore.append(events).block();
+                events = new ArrayList<>();
+            }
+        }
+    }
+
+    @Benchmark
+    public long readAll() {
+        return eventStore.read()
+                         .flux()
+                         .count()
+                         .block();
+    }
+}
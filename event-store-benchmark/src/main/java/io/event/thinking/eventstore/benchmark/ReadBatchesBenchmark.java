@@ -0,0 +1,100 @@
+package io.event.thinking.eventstore.benchmark;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.api.SequencedEvent;
+import io.event.thinking.eventstore.inmemory.InMemoryEventStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.event.thinking.eventstore.api.Criteria.anyOf;
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Event.event;
+import static io.event.thinking.eventstore.api.Index.index;
+
+/**
+ * Compares the throughput of sourcing a model from a large read, with events emitted one by one through
+ * {@code read} and in batches through {@code readBatches}, with and without an asynchronous boundary between the read
+ * and the sourcing. The model folds the payload size of each of the 100 000 events of a single course.
+ * <p>
+ * Run with {@code java -jar event-store-benchmark/target/benchmarks.jar ReadBatchesBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReadBatchesBenchmark {
+
+    private static final int EVENTS = 100_000;
+
+    @Param({"16", "256", "4096"})
+    public int batchSize;
+
+    @Param({"false", "true"})
+    public boolean publishOn;
+
+    private final Criteria criteria = anyOf(allOf(index("courseId", "course-1")));
+    private final Scheduler scheduler = Schedulers.single();
+    private InMemoryEventStore eventStore;
+
+    @Setup
+    public void setUp() {
+        eventStore = new InMemoryEventStore();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++) {
+            events.add(event(new byte[64], index("eventType", "StudentSubscribed"), index("courseId", "course-1")));
+            if (events.size() == 1_000) {
+                eventStore.append(events).block();
+                events = new ArrayList<>();
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long sourceEventByEvent() {
+        return boundary(eventStore.read(criteria).flux())
+                .reduce(0L, (model, event) -> model + event.event().payload().length)
+                .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long sourceBatches() {
+        return boundary(eventStore.readBatches(0L, criteria, batchSize).flux())
+                .reduce(0L, (model, batch) -> {
+                    for (SequencedEvent event : batch) {
+                        model += event.event().payload().length;
+                    }
+                    return model;
+                })
+                .block();
+    }
+
+    /**
+     * Optionally moves sourcing to another thread, like a consumer behind an asynchronous boundary would.
+     */
+    private <T> Flux<T> boundary(Flux<T> flux) {
+        return publishOn ? flux.publishOn(scheduler) : flux;
+    }
+}
@@ -0,0 +1,114 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Index;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static io.event.thinking.eventstore.api.Criteria.anyOf;
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Index.index;
+
+/**
+ * Measures reads of the faculty sample against the on-disk {@link LsmCriteriaIndex}, and reports the share of run
+ * lookups skipped by Bloom filters. Each term of the faculty opens its own courses, while students stay enrolled for
+ * four terms, so most runs hold no events of a given course or student. Every read uses the criteria of subscribing a
+ * random student to a random course of the same term, starting from the first event, like validating an old
+ * consistency marker.
+ * <p>
+ * Lives in the package of the file Event Store to reach the package-private index. Run with
+ * {@code java -jar event-store-benchmark/target/benchmarks.jar RunFilterBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RunFilterBenchmark {
+
+    private static final int TERMS = 64;
+    private static final int EVENTS_PER_TERM = 4096;
+    private static final int COURSES_PER_TERM = 20;
+    private static final int STUDENTS_PER_TERM = 200;
+    private static final String[] TYPES = {"StudentSubscribed", "StudentUnsubscribed", "CourseCapacityChanged"};
+
+    private final Random random = new Random(42);
+    @SuppressWarnings("unchecked")
+    private final Set<Index>[] indices = (Set<Index>[]) new Set<?>[TERMS * EVENTS_PER_TERM];
+    private Path directory;
+    private LsmCriteriaIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("run-filter-benchmark");
+        for (int sequence = 0; sequence < indices.length; sequence++) {
+            int term = sequence / EVENTS_PER_TERM;
+            int student = STUDENTS_PER_TERM * (term / 4) + random.nextInt(STUDENTS_PER_TERM);
+            indices[sequence] = Set.of(index("eventType", TYPES[random.nextInt(TYPES.length)]),
+                                       index("courseId", course(term, random.nextInt(COURSES_PER_TERM))),
+                                       index("studentId", "student-" + student));
+        }
+        var writing = new LsmCriteriaIndex(directory, EVENTS_PER_TERM);
+        writing.open(0L);
+        for (int sequence = 0; sequence < indices.length; sequence++) {
+            writing.add(sequence, indices[sequence]);
+            writing.committed(sequence + 1L);
+        }
+        writing.close();
+        index = new LsmCriteriaIndex(directory, EVENTS_PER_TERM);
+        for (long sequence = index.open(indices.length); sequence < indices.length; sequence++) {
+            index.add(sequence, indices[(int) sequence]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        var statistics = index.statistics();
+        System.out.printf("%nBloom filters skipped %.1f%% of %d run lookups, %d lookups were false positives%n",
+                          100 * statistics.skippedShare(), statistics.lookups(), statistics.falsePositives());
+        index.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static String course(int term, int course) {
+        return "course-" + term + "-" + course;
+    }
+
+    @Benchmark
+    public long subscriptionCriteria() {
+        int term = random.nextInt(TERMS);
+        var courseId = index("courseId", course(term, random.nextInt(COURSES_PER_TERM)));
+        var studentId = index("studentId", "student-" + (STUDENTS_PER_TERM * (term / 4)
+                + random.nextInt(STUDENTS_PER_TERM)));
+        Criteria criteria = anyOf(allOf(index("eventType", "CourseCapacityChanged"), courseId),
+                                  allOf(index("eventType", "StudentSubscribed"), courseId),
+                                  allOf(index("eventType", "StudentSubscribed"), studentId),
+                                  allOf(index("eventType", "StudentUnsubscribed"), courseId),
+                                  allOf(index("eventType", "StudentUnsubscribed"), studentId));
+        return CriteriaMatching.sequences(0L, criteria, index, sequence -> indices[(int) sequence])
+                               .count();
+    }
+}
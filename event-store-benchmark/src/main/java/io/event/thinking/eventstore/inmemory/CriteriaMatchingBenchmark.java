@@ -0,0 +1,106 @@
+package io.event.thinking.eventstore.inmemory;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Index;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static io.event.thinking.eventstore.api.Criteria.anyOf;
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Index.index;
+
+/**
+ * Compares the per-event cost of matching {@link Criteria} against a {@code Set} of indices with the compiled
+ * {@link CriteriaMatcher} over sorted ids of interned indices. Events and criteria mimic the faculty sample: the
+ * criteria of subscribing a student to a course, matched against subscriptions of random students to random courses.
+ * <p>
+ * Lives in the package of the in-memory Event Store to reach the package-private matcher. Run with
+ * {@code java -jar event-store-benchmark/target/benchmarks.jar CriteriaMatchingBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CriteriaMatchingBenchmark {
+
+    private static final int EVENTS = 1024;
+
+    private final Set<Index>[] indices = newArray();
+    private final int[][] ids = new int[EVENTS][];
+    private Criteria criteria;
+    private CriteriaMatcher matcher;
+
+    @SuppressWarnings("unchecked")
+    private static Set<Index>[] newArray() {
+        return (Set<Index>[]) new Set<?>[EVENTS];
+    }
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        var dictionary = new IndexDictionary();
+        String[] types = {"StudentSubscribed", "StudentUnsubscribed", "CourseCapacityChanged"};
+        for (int i = 0; i < EVENTS; i++) {
+            indices[i] = Set.of(index("eventType", types[random.nextInt(types.length)]),
+                                index("courseId", "course-" + random.nextInt(20)),
+                                index("studentId", "student-" + random.nextInt(200)));
+            ids[i] = dictionary.intern(indices[i]);
+        }
+        var courseId = index("courseId", "course-7");
+        var studentId = index("studentId", "student-42");
+        criteria = anyOf(allOf(index("eventType", "StudentEnrolledFaculty"), studentId),
+                         allOf(index("eventType", "CourseCreated"), courseId),
+                         allOf(index("eventType", "CourseCapacityChanged"), courseId),
+                         allOf(index("eventType", "StudentSubscribed"), courseId),
+                         allOf(index("eventType", "StudentSubscribed"), studentId),
+                         allOf(index("eventType", "StudentUnsubscribed"), courseId),
+                         allOf(index("eventType", "StudentUnsubscribed"), studentId));
+        int[] frequencies = new int[EVENTS * 3];
+        for (int[] event : ids) {
+            for (int id : event) {
+                frequencies[id]++;
+            }
+        }
+        matcher = CriteriaMatcher.compile(criteria, dictionary, id -> frequencies[id]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int criteriaMatchesSet() {
+        int matches = 0;
+        for (Set<Index> event : indices) {
+            if (criteria.matches(event)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int compiledMatcherMatchesIds() {
+        int matches = 0;
+        for (int[] event : ids) {
+            if (matcher.matches(event)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,99 @@
+package io.event.thinking.eventstore.inmemory;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Index;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static io.event.thinking.eventstore.api.Criteria.anyOf;
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Index.index;
+
+/**
+ * Compares the per-event cost of waking live subscribers by matching each event against criteria of all subscribers
+ * with routing it through the {@link SubscriptionRegistry}. Each subscriber follows one student of the faculty sample,
+ * while events concern random students out of all subscribed ones.
+ * <p>
+ * Lives in the package of the in-memory Event Store to reach the package-private registry. Run with
+ * {@code java -jar event-store-benchmark/target/benchmarks.jar SubscriptionDispatchBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SubscriptionDispatchBenchmark {
+
+    private static final int EVENTS = 1024;
+
+    @Param({"100", "10000"})
+    private int subscribers;
+
+    @SuppressWarnings("unchecked")
+    private final Set<Index>[] indices = (Set<Index>[]) new Set<?>[EVENTS];
+    private final int[][] ids = new int[EVENTS][];
+    private Criteria[] criteria;
+    private SubscriptionRegistry registry;
+    private int woken;
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        var dictionary = new IndexDictionary();
+        String[] types = {"StudentSubscribed", "StudentUnsubscribed", "CourseCapacityChanged"};
+        for (int i = 0; i < EVENTS; i++) {
+            indices[i] = Set.of(index("eventType", types[random.nextInt(types.length)]),
+                                index("courseId", "course-" + random.nextInt(20)),
+                                index("studentId", "student-" + random.nextInt(subscribers)));
+            ids[i] = dictionary.intern(indices[i]);
+        }
+        registry = new SubscriptionRegistry(dictionary, index -> index.key().equals("eventType") ? EVENTS : 1);
+        criteria = new Criteria[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            var studentId = index("studentId", "student-" + i);
+            criteria[i] = anyOf(allOf(index("eventType", "StudentSubscribed"), studentId),
+                                allOf(index("eventType", "StudentUnsubscribed"), studentId));
+            registry.register(criteria[i], () -> woken++);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int matchEveryCriteria() {
+        int matches = 0;
+        for (Set<Index> event : indices) {
+            for (Criteria subscriber : criteria) {
+                if (subscriber.matches(event)) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int dispatchThroughRegistry() {
+        woken = 0;
+        for (int[] event : ids) {
+            registry.dispatch(event);
+        }
+        return woken;
+    }
+}
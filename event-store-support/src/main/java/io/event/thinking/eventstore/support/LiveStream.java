@@ -0,0 +1,155 @@
+package io.event.thinking.eventstore.support;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.SequencedEvent;
+import reactor.core.Disposable;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * A single subscription to the live stream of an Event Store. Committed events matching the criteria are read from the
+ * log as long as the subscriber requests them, first catching up with the events committed before the subscription,
+ * then following the committed watermark as it moves. Once the subscription reaches the watermark, it waits for the
+ * Event Store to notify it about newly committed events instead of polling.
+ *
+ * <p>
+ * Each read covers the events between the end of the previous read and the current watermark, so no event is emitted
+ * twice and none is skipped. Events are emitted only on demand, so a slow subscriber never makes the Event Store buffer
+ * events for it. All work of a subscription happens on its own worker, one step at a time.
+ * </p>
+ * <p>
+ * Event Store implementations expose themselves to live streams as a {@link Source}.
+ * </p>
+ */
+public final class LiveStream {
+
+    private final Source source;
+    private final Criteria criteria;
+    private final FluxSink<SequencedEvent> sink;
+    private final Scheduler.Worker worker;
+    private final AtomicBoolean awaiting = new AtomicBoolean();
+    /**
+     * Matching events between {@link #to} of the previous read and the current {@link #to}. Only accessed by the
+     * worker.
+     */
+    private Iterator<SequencedEvent> events = Collections.emptyIterator();
+    /**
+     * The position up to which (exclusively) events have been read. Only accessed by the worker.
+     */
+    private long to;
+
+    private LiveStream(Source source,
+                       long fromSequence,
+                       Criteria criteria,
+                       FluxSink<SequencedEvent> sink,
+                       Scheduler scheduler) {
+        this.source = source;
+        this.criteria = criteria;
+        this.sink = sink;
+        this.worker = scheduler.createWorker();
+        this.to = Math.max(fromSequence, 0L);
+    }
+
+    /**
+     * Starts streaming events of the {@code source} matching the {@code criteria} from the {@code fromSequence}
+     * inclusively into the {@code sink}.
+     *
+     * @param source       the Event Store to stream events of
+     * @param fromSequence the inclusive starting sequence of the stream
+     * @param criteria     the criteria used to filter events
+     * @param sink         the sink to emit events into
+     * @param scheduler    the scheduler providing the worker of the subscription
+     */
+    public static void start(Source source,
+                             long fromSequence,
+                             Criteria criteria,
+                             FluxSink<SequencedEvent> sink,
+                             Scheduler scheduler) {
+        var stream = new LiveStream(source, fromSequence, criteria, sink, scheduler);
+        var subscription = source.subscribe(criteria, stream::wake);
+        sink.onDispose(() -> {
+            subscription.dispose();
+            stream.worker.dispose();
+        });
+        sink.onRequest(requested -> stream.schedule());
+    }
+
+    private void schedule() {
+        if (sink.isCancelled()) {
+            return;
+        }
+        try {
+            worker.schedule(this::drain);
+        } catch (RejectedExecutionException e) {
+            // the subscription was cancelled concurrently
+        }
+    }
+
+    /**
+     * Emits as many matching events as requested. If there are no more committed events to read, waits to be woken up.
+     * The watermark is checked again after starting to wait, so a commit racing with it is not missed.
+     */
+    private void drain() {
+        try {
+            while (sink.requestedFromDownstream() > 0 && !sink.isCancelled()) {
+                if (events.hasNext()) {
+                    sink.next(events.next());
+                    continue;
+                }
+                long committed = source.committed();
+                if (committed > to) {
+                    events = source.matching(to, committed, criteria).iterator();
+                    to = committed;
+                    continue;
+                }
+                awaiting.set(true);
+                if (source.committed() == to) {
+                    return;
+                }
+                awaiting.set(false);
+            }
+        } catch (RuntimeException e) {
+            sink.error(e);
+        }
+    }
+
+    /**
+     * Resumes reading if the subscription waits for new events. Called by the Event Store, possibly many times per
+     * commit, so it is cheap when the subscription is already reading.
+     */
+    private void wake() {
+        if (awaiting.compareAndSet(true, false)) {
+            schedule();
+        }
+    }
+
+    /**
+     * The Event Store as seen by its live streams.
+     */
+    public interface Source {
+
+        /**
+         * @return the position up to which (exclusively) events are committed
+         */
+        long committed();
+
+        /**
+         * @return committed events matching the {@code criteria} between {@code fromSequence} inclusively and
+         * {@code toSequence} exclusively
+         */
+        Stream<SequencedEvent> matching(long fromSequence, long toSequence, Criteria criteria);
+
+        /**
+         * Registers the {@code listener} to be run after commits of events which might match the {@code criteria}.
+         *
+         * @return disposes the registration
+         */
+        Disposable subscribe(Criteria criteria, Runnable listener);
+    }
+}
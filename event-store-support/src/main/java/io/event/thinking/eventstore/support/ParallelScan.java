@@ -0,0 +1,65 @@
+package io.event.thinking.eventstore.support;
+
+import io.event.thinking.eventstore.api.SequencedEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.stream.Stream;
+
+/**
+ * Scans a large range of the log in parallel. The range is split into consecutive chunks of sequences, each matched as
+ * a separate task on a worker of the given scheduler. Matched chunks are merged back in the order of their ranges, so
+ * events are emitted in the order of the global sequence, exactly like a sequential scan would emit them.
+ *
+ * <p>
+ * At most as many chunks as there are {@link Schedulers#DEFAULT_POOL_SIZE cores} are matched ahead of the subscriber,
+ * which bounds the memory held by a scan to that many chunks. A chunk whose predecessors are still being matched waits
+ * until they are emitted.
+ * </p>
+ */
+public final class ParallelScan {
+
+    private ParallelScan() {
+    }
+
+    /**
+     * Scans events between {@code fromSequence} inclusively and {@code toSequence} exclusively in chunks of
+     * {@code chunkSize} sequences.
+     *
+     * @param fromSequence the inclusive starting sequence of the scan
+     * @param toSequence   the exclusive end sequence of the scan
+     * @param chunkSize    the number of sequences in a chunk, must be positive
+     * @param source       matches events of a single chunk
+     * @param scheduler    the scheduler running chunk tasks
+     * @return matching events in ascending order of their sequences
+     */
+    public static Flux<SequencedEvent> scan(long fromSequence,
+                                            long toSequence,
+                                            int chunkSize,
+                                            Source source,
+                                            Scheduler scheduler) {
+        long chunks = (toSequence - fromSequence + chunkSize - 1) / chunkSize;
+        return Flux.range(0, Math.toIntExact(chunks))
+                   .flatMapSequential(chunk -> {
+                       long from = fromSequence + (long) chunk * chunkSize;
+                       long to = Math.min(from + chunkSize, toSequence);
+                       return Mono.fromCallable(() -> source.matching(from, to).toList())
+                                  .subscribeOn(scheduler);
+                   }, Schedulers.DEFAULT_POOL_SIZE, 1)
+                   .flatMapIterable(events -> events);
+    }
+
+    /**
+     * Matches events of a chunk of the log.
+     */
+    public interface Source {
+
+        /**
+         * @return committed events between {@code fromSequence} inclusively and {@code toSequence} exclusively, in
+         * ascending order
+         */
+        Stream<SequencedEvent> matching(long fromSequence, long toSequence);
+    }
+}
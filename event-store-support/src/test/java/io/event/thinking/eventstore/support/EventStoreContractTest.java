@@ -0,0 +1,735 @@
+package io.event.thinking.eventstore.support;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Criterion;
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.api.EventStore;
+import io.event.thinking.eventstore.api.Index;
+import io.event.thinking.eventstore.api.IndexedEvent;
+import io.event.thinking.eventstore.api.InvalidConsistencyConditionException;
+import io.event.thinking.eventstore.api.MarkedEvents;
+import io.event.thinking.eventstore.api.SequencedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static io.event.thinking.eventstore.api.ConsistencyCondition.consistencyCondition;
+import static io.event.thinking.eventstore.api.Criteria.anyOf;
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Index.index;
+import static io.event.thinking.eventstore.api.Event.event;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Behaviour every {@link EventStore} implementation has to provide. Tests of an implementation extend this class and
+ * add tests specific to the implementation.
+ *
+ * @param <E> the type of the tested Event Store
+ */
+public abstract class EventStoreContractTest<E extends EventStore> {
+
+    protected E eventStore;
+
+    /**
+     * Creates the Event Store under test, empty.
+     *
+     * @return the new Event Store
+     */
+    protected abstract E createEventStore();
+
+    @BeforeEach
+    void setUp() {
+        eventStore = createEventStore();
+    }
+
+    @Test
+    void appendWithNoCondition() {
+        StepVerifier.create(eventStore.append(event(emptyPayload())))
+                    .expectNext(0L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void appendTransaction() {
+        StepVerifier.create(eventStore.append(List.of(event(emptyPayload()),
+                                                      event(emptyPayload()),
+                                                      event(emptyPayload()))))
+                    .expectNext(2L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void multipleAppendsWithNoCondition() {
+        var event = event(emptyPayload());
+        var appends = Flux.merge(eventStore.append(event),
+                                 eventStore.append(event),
+                                 eventStore.append(event),
+                                 eventStore.append(event),
+                                 eventStore.append(event));
+        StepVerifier.create(appends)
+                    .expectNext(0L, 1L, 2L, 3L, 4L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void multipleAppendsWithNonConflictingCondition() {
+        var index1 = index("key1", "value1");
+        var index2 = index("key2", "value2");
+        var event1 = event(emptyPayload(), index1);
+        var event2 = event(emptyPayload(), index2);
+        var consistencyCondition1 = consistencyCondition(-1L, Criteria.anyOf(Criterion.allOf(index1)));
+        var consistencyCondition2 = consistencyCondition(0L, Criteria.anyOf(Criterion.allOf(index2)));
+
+        var appends = Flux.merge(eventStore.append(event1, consistencyCondition1),
+                                 eventStore.append(event2, consistencyCondition2));
+        StepVerifier.create(appends)
+                    .expectNext(0L, 1L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void multipleAppendsWithConflictingIndicesAndCorrectConsistencyMarker() {
+        var index = index("key", "value");
+        var event1 = event(emptyPayload(), index);
+        var event2 = event(emptyPayload(), index);
+        var consistencyCondition1 = consistencyCondition(0L, Criteria.anyOf(Criterion.allOf(index)));
+        var consistencyCondition2 = consistencyCondition(1L, Criteria.anyOf(Criterion.allOf(index)));
+
+        var appends = Flux.merge(eventStore.append(event1, consistencyCondition1),
+                                 eventStore.append(event2, consistencyCondition2));
+        StepVerifier.create(appends)
+                    .expectNext(0L, 1L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void multipleAppendsWithConflictingCondition() {
+        var index = index("key", "value");
+        var event = event(emptyPayload(), index);
+        var consistencyCondition = consistencyCondition(-1L, Criteria.anyOf(Criterion.allOf(index)));
+
+        var appends = Flux.merge(eventStore.append(event, consistencyCondition),
+                                 eventStore.append(event, consistencyCondition));
+        StepVerifier.create(appends)
+                    .expectNext(0L)
+                    .verifyError(InvalidConsistencyConditionException.class);
+    }
+
+    @Test
+    void appendWithConflictingMultiIndexCondition() {
+        var index1 = index("key1", "value1");
+        var index2 = index("key2", "value2");
+        eventStore.append(List.of(event(emptyPayload(), index1, index2),
+                                  event(emptyPayload(), index1),
+                                  event(emptyPayload(), index2)))
+                  .block();
+
+        var criteria = Criteria.anyOf(Criterion.allOf(index1, index2));
+        StepVerifier.create(eventStore.append(event(emptyPayload()), consistencyCondition(0L, criteria)))
+                    .verifyError(InvalidConsistencyConditionException.class);
+        StepVerifier.create(eventStore.append(event(emptyPayload()), consistencyCondition(1L, criteria)))
+                    .expectNext(3L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void appendWithConflictingConditionMatchingAllEvents() {
+        eventStore.append(event(emptyPayload()))
+                  .block();
+
+        StepVerifier.create(eventStore.append(event(emptyPayload()), consistencyCondition(-1L, Criteria.anyOf())))
+                    .verifyError(InvalidConsistencyConditionException.class);
+        StepVerifier.create(eventStore.append(event(emptyPayload()), consistencyCondition(1L, Criteria.anyOf())))
+                    .expectNext(1L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void appendWithNonExistingConsistencyMarker() {
+        StepVerifier.create(eventStore.append(event(emptyPayload()), consistencyCondition(100L, Criteria.anyOf())))
+                    .expectNext(0L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void noGapsAppend() throws InterruptedException {
+        Thread[] appenders = new Thread[12];
+        int appendsPerAppender = 1_000;
+
+        for (int i = 0; i < appenders.length; i++) {
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < appendsPerAppender; j++) {
+                    eventStore.append(event(emptyPayload()))
+                              .block();
+                }
+            });
+            appenders[i] = t;
+            t.start();
+        }
+        for (Thread thread : appenders) {
+            thread.join();
+        }
+
+        int expectedSize = appenders.length * appendsPerAppender;
+        StepVerifier.create(eventStore.read()
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNextSequence(() -> IntStream.range(0, expectedSize)
+                                                       .asLongStream()
+                                                       .iterator())
+                    .verifyComplete();
+    }
+
+    @Test
+    void readsNeverObservePartialTransactions() throws InterruptedException {
+        var transaction = List.of(event(emptyPayload()), event(emptyPayload()), event(emptyPayload()));
+        var appender = new Thread(() -> {
+            for (int i = 0; i < 1_000; i++) {
+                eventStore.append(transaction)
+                          .block();
+            }
+        });
+        appender.start();
+        while (appender.isAlive()) {
+            var count = eventStore.read()
+                                  .flux()
+                                  .count()
+                                  .block();
+            assertEquals(0L, count % transaction.size());
+        }
+        appender.join();
+
+        assertEquals(3_000L, eventStore.read().consistencyMarker());
+    }
+
+    @Test
+    void readFromEmptyEventStore() {
+        var source = eventStore.read(Criteria.anyOf(Criterion.allOf(index("key", "value"))));
+
+        assertEquals(0L, source.consistencyMarker());
+        StepVerifier.create(source.flux())
+                    .verifyComplete();
+    }
+
+    @Test
+    void read() {
+        var index1 = index("key1", "value1");
+        var index2 = index("key2", "value2");
+        var event1 = event(payload("event1"), index1);
+        var event2 = event(payload("event2"), index2);
+
+        var appends = Flux.merge(eventStore.append(event1),
+                                 eventStore.append(event2),
+                                 eventStore.append(event1),
+                                 eventStore.append(event1),
+                                 eventStore.append(event2));
+        StepVerifier.create(appends)
+                    .expectNext(0L, 1L, 2L, 3L, 4L)
+                    .verifyComplete();
+
+        var source1 = eventStore.read(Criteria.anyOf(Criterion.allOf(index1)));
+        assertEquals(5L, source1.consistencyMarker());
+        StepVerifier.create(source1.flux().map(EventStoreContractTest::stored))
+                    .expectNext(stored(0L, event1),
+                                stored(2L, event1),
+                                stored(3L, event1))
+                    .verifyComplete();
+
+        StepVerifier.create(eventStore.append(event2))
+                    .expectNext(5L)
+                    .verifyComplete();
+        var source2 = eventStore.read(Criteria.anyOf(Criterion.allOf(index2)));
+        assertEquals(6L, source2.consistencyMarker());
+        StepVerifier.create(source2.flux().map(EventStoreContractTest::stored))
+                    .expectNext(stored(1L, event2),
+                                stored(4L, event2),
+                                stored(5L, event2))
+                    .verifyComplete();
+    }
+
+    @Test
+    void readWithCriterionOfMultipleIndices() {
+        var index1 = index("key1", "value1");
+        var index2 = index("key2", "value2");
+        var event1 = event(payload("event1"), index1);
+        var event2 = event(payload("event2"), index1, index2);
+        var event3 = event(payload("event3"), index2);
+        eventStore.append(List.of(event1, event2, event3, event2, event1))
+                  .block();
+
+        StepVerifier.create(eventStore.read(Criteria.anyOf(Criterion.allOf(index1, index2)))
+                                      .flux()
+                                      .map(EventStoreContractTest::stored))
+                    .expectNext(stored(1L, event2),
+                                stored(3L, event2))
+                    .verifyComplete();
+    }
+
+    @Test
+    void readWithMultipleCriterions() {
+        var index1 = index("key1", "value1");
+        var index2 = index("key2", "value2");
+        var index3 = index("key3", "value3");
+        var event1 = event(payload("event1"), index1);
+        var event2 = event(payload("event2"), index1, index2);
+        var event3 = event(payload("event3"), index3);
+        eventStore.append(List.of(event1, event2, event3, event2, event1, event3))
+                  .block();
+
+        var criteria = Criteria.anyOf(Criterion.allOf(index1, index2), Criterion.allOf(index3));
+        StepVerifier.create(eventStore.read(2L, criteria)
+                                      .flux()
+                                      .map(EventStoreContractTest::stored))
+                    .expectNext(stored(2L, event3),
+                                stored(3L, event2),
+                                stored(5L, event3))
+                    .verifyComplete();
+    }
+
+    @Test
+    void readWithUnknownIndex() {
+        eventStore.append(event(payload("event"), index("key", "value")))
+                  .block();
+
+        StepVerifier.create(eventStore.read(Criteria.anyOf(Criterion.allOf(index("key", "other"))))
+                                      .flux())
+                    .verifyComplete();
+    }
+
+    @Test
+    void readFromEmptyEventStoreWithoutCriteria() {
+        StepVerifier.create(eventStore.read()
+                                      .flux())
+                    .verifyComplete();
+    }
+
+    @Test
+    void readWithNullCriteria() {
+        var index = index("key", "value");
+        var event = event(payload("event"), index);
+        eventStore.append(event)
+                  .block();
+
+        MarkedEvents result = eventStore.read(0L, null);
+        assertEquals(1L, result.consistencyMarker());
+        StepVerifier.create(result.flux().map(EventStoreContractTest::stored))
+                    .expectNext(stored(0L, event))
+                    .verifyComplete();
+    }
+
+    @Test
+    void readAllEvents() {
+        var index = index("key", "value");
+        var event1 = event(payload("event1"), index);
+        var event2 = event(payload("event2"), index);
+        var event3 = event(payload("event3"), index);
+        var appends = Flux.merge(eventStore.append(event1),
+                                 eventStore.append(event2),
+                                 eventStore.append(event3));
+        StepVerifier.create(appends)
+                    .expectNext(0L, 1L, 2L)
+                    .verifyComplete();
+
+        StepVerifier.create(eventStore.read()
+                                      .flux()
+                                      .map(EventStoreContractTest::stored))
+                    .expectNext(stored(0L, event1),
+                                stored(1L, event2),
+                                stored(2L, event3))
+                    .verifyComplete();
+    }
+
+    @Test
+    void readFromSeq() {
+        var index = index("key", "value");
+        var event1 = event(payload("event1"), index);
+        var event2 = event(payload("event2"), index);
+        var event3 = event(payload("event3"), index);
+        var appends = Flux.merge(eventStore.append(event1),
+                                 eventStore.append(event2),
+                                 eventStore.append(event3));
+        StepVerifier.create(appends)
+                    .expectNext(0L, 1L, 2L)
+                    .verifyComplete();
+
+        StepVerifier.create(eventStore.read(1L)
+                                      .flux()
+                                      .map(EventStoreContractTest::stored))
+                    .expectNext(stored(1L, event2),
+                                stored(2L, event3))
+                    .verifyComplete();
+    }
+
+    @Test
+    void readFromInvalidSeq() {
+        var index = index("key", "value");
+        var event1 = event(payload("event1"), index);
+        var event2 = event(payload("event2"), index);
+        var event3 = event(payload("event3"), index);
+        var appends = Flux.merge(eventStore.append(event1),
+                                 eventStore.append(event2),
+                                 eventStore.append(event3));
+        StepVerifier.create(appends)
+                    .expectNext(0L, 1L, 2L)
+                    .verifyComplete();
+
+        StepVerifier.create(eventStore.read(5L)
+                                      .flux())
+                    .verifyComplete();
+    }
+
+    @Test
+    void readIndexedLoadsPayloadsOnDemand() {
+        var index = index("key", "value");
+        eventStore.append(List.of(event(payload("event0"), index),
+                                  event(payload("event1")),
+                                  event(payload("event2"), index)))
+                  .block();
+
+        var indexed = eventStore.readIndexed(0L, anyOf(allOf(index)));
+
+        assertEquals(3L, indexed.consistencyMarker());
+        var events = indexed.flux()
+                            .collectList()
+                            .block();
+        assertEquals(List.of(0L, 2L), events.stream().map(IndexedEvent::sequence).toList());
+        assertEquals(Set.of(index), events.get(1).indices());
+        assertEquals("event2", new String(events.get(1).payload().get()));
+        assertEquals("event0", new String(events.get(0).load().event().payload()));
+        StepVerifier.create(eventStore.readIndexed(1L, null)
+                                      .flux()
+                                      .map(event -> new String(event.payload().get())))
+                    .expectNext("event1", "event2")
+                    .verifyComplete();
+    }
+
+    @Test
+    void countAndExists() {
+        var course = index("courseId", "course1");
+        var subscribed = index("eventType", "StudentSubscribed");
+        eventStore.append(List.of(event(payload("event0"), subscribed, course),
+                                  event(payload("event1"), subscribed),
+                                  event(payload("event2"), course),
+                                  event(payload("event3"), subscribed, course)))
+                  .block();
+
+        StepVerifier.create(eventStore.count(0L, anyOf(allOf(course))))
+                    .expectNext(3L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.count(1L, anyOf(allOf(subscribed, course))))
+                    .expectNext(1L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.count(0L, anyOf(allOf(subscribed), allOf(course))))
+                    .expectNext(4L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.count(2L, null))
+                    .expectNext(2L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.count(0L, anyOf(allOf(index("courseId", "course2")))))
+                    .expectNext(0L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.exists(3L, anyOf(allOf(subscribed, course))))
+                    .expectNext(true)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.exists(4L, anyOf(allOf(course))))
+                    .expectNext(false)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.exists(4L, null))
+                    .expectNext(false)
+                    .verifyComplete();
+    }
+
+    @Test
+    void countIsEvaluatedOnSubscription() {
+        var index = index("key", "value");
+        var count = eventStore.count(0L, anyOf(allOf(index)));
+
+        eventStore.append(List.of(event(emptyPayload(), index), event(emptyPayload(), index)))
+                  .block();
+
+        StepVerifier.create(count)
+                    .expectNext(2L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void readsAreBoundedByTheirConsistencyMarker() {
+        var index = index("key", "value");
+        var criteria = anyOf(allOf(index));
+        eventStore.append(List.of(event(emptyPayload(), index), event(emptyPayload(), index)))
+                  .block();
+        var read = eventStore.read(criteria);
+        var readAll = eventStore.read();
+        var batches = eventStore.readBatches(0L, criteria, 16);
+        var indexed = eventStore.readIndexed(0L, criteria);
+        var backward = eventStore.readBackward(criteria, 16);
+
+        eventStore.append(List.of(event(emptyPayload(), index), event(emptyPayload(), index)))
+                  .block();
+
+        assertEquals(2L, read.consistencyMarker());
+        StepVerifier.create(read.flux().map(SequencedEvent::sequence))
+                    .expectNext(0L, 1L)
+                    .verifyComplete();
+        StepVerifier.create(readAll.flux().map(SequencedEvent::sequence))
+                    .expectNext(0L, 1L)
+                    .verifyComplete();
+        StepVerifier.create(batches.flux().flatMapIterable(batch -> batch).map(SequencedEvent::sequence))
+                    .expectNext(0L, 1L)
+                    .verifyComplete();
+        StepVerifier.create(indexed.flux().map(IndexedEvent::sequence))
+                    .expectNext(0L, 1L)
+                    .verifyComplete();
+        StepVerifier.create(backward.flux().map(SequencedEvent::sequence))
+                    .expectNext(1L, 0L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void readBackward() {
+        var index = index("key", "value");
+        eventStore.append(List.of(event(payload("event0"), index),
+                                  event(payload("event1")),
+                                  event(payload("event2"), index),
+                                  event(payload("event3"), index),
+                                  event(payload("event4"), index)))
+                  .block();
+
+        var latest = eventStore.readBackward(anyOf(allOf(index)), 2);
+
+        assertEquals(5L, latest.consistencyMarker());
+        StepVerifier.create(latest.flux()
+                                  .map(SequencedEvent::sequence))
+                    .expectNext(4L, 3L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.readBackward(3L, anyOf(allOf(index)), 10)
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(3L, 2L, 0L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.readBackward(anyOf(allOf(index("key", "other"))), 10)
+                                      .flux())
+                    .verifyComplete();
+    }
+
+    @Test
+    void readBackwardWithoutCriteria() {
+        eventStore.append(List.of(event(emptyPayload()), event(emptyPayload()), event(emptyPayload())))
+                  .block();
+
+        StepVerifier.create(eventStore.readBackward(null, 2)
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(2L, 1L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.readBackward(1L, null, 10)
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(1L, 0L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.readBackward(-1L, null, 10)
+                                      .flux())
+                    .verifyComplete();
+    }
+
+    @Test
+    void readBackwardMatchesReversedRead() {
+        var eventTypes = List.of(index("eventType", "A"), index("eventType", "B"), index("eventType", "C"));
+        for (int i = 0; i < 1_000; i++) {
+            eventStore.append(event(emptyPayload(),
+                                    eventTypes.get(i % 3),
+                                    index("courseId", "course" + i % 7)))
+                      .block();
+        }
+        var criteria = anyOf(allOf(eventTypes.get(0), index("courseId", "course3")),
+                             allOf(eventTypes.get(2)));
+        var forward = eventStore.read(criteria)
+                                .flux()
+                                .map(SequencedEvent::sequence)
+                                .collectList()
+                                .block();
+
+        StepVerifier.create(eventStore.readBackward(criteria, Integer.MAX_VALUE)
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNextSequence(forward.reversed())
+                    .verifyComplete();
+        StepVerifier.create(eventStore.readBackward(500L, criteria, 5)
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNextSequence(forward.reversed().stream().filter(sequence -> sequence <= 500L).limit(5)
+                                               .toList())
+                    .verifyComplete();
+    }
+
+    @Test
+    void readBatches() {
+        var index = index("key", "value");
+        eventStore.append(List.of(event(payload("event0"), index),
+                                  event(payload("event1")),
+                                  event(payload("event2"), index),
+                                  event(payload("event3"), index),
+                                  event(payload("event4"), index)))
+                  .block();
+
+        var batches = eventStore.readBatches(1L, anyOf(allOf(index)), 2);
+
+        assertEquals(5L, batches.consistencyMarker());
+        StepVerifier.create(batches.flux()
+                                   .map(batch -> batch.stream().map(SequencedEvent::sequence).toList()))
+                    .expectNext(List.of(2L, 3L), List.of(4L))
+                    .verifyComplete();
+    }
+
+    @Test
+    void readBatchesWithoutCriteria() {
+        eventStore.append(List.of(event(emptyPayload()), event(emptyPayload()), event(emptyPayload())))
+                  .block();
+
+        StepVerifier.create(eventStore.readBatches(0L, null, 10)
+                                      .flux()
+                                      .map(List::size))
+                    .expectNext(3)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.readBatches(3L, null, 10)
+                                      .flux())
+                    .verifyComplete();
+    }
+
+    @Test
+    void streamCatchesUpAndFollowsAppends() {
+        var index = index("key", "value");
+        eventStore.append(event(payload("event0"), index))
+                  .block();
+        eventStore.append(event(payload("event1")))
+                  .block();
+
+        StepVerifier.create(eventStore.stream(0L, anyOf(allOf(index)))
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(0L)
+                    .then(() -> eventStore.append(List.of(event(payload("event2")), event(payload("event3"), index)))
+                                          .block())
+                    .expectNext(3L)
+                    .then(() -> eventStore.append(event(payload("event4"), index))
+                                          .block())
+                    .expectNext(4L)
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void streamFromSequence() {
+        eventStore.append(List.of(event(emptyPayload()), event(emptyPayload()), event(emptyPayload())))
+                  .block();
+
+        StepVerifier.create(eventStore.stream(1L, null)
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(1L, 2L)
+                    .expectNoEvent(Duration.ofMillis(50))
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void streamEmitsOnlyRequestedEvents() {
+        eventStore.append(List.of(event(emptyPayload()), event(emptyPayload()), event(emptyPayload())))
+                  .block();
+
+        StepVerifier.create(eventStore.stream(0L, null)
+                                      .map(SequencedEvent::sequence), 0)
+                    .expectSubscription()
+                    .expectNoEvent(Duration.ofMillis(50))
+                    .thenRequest(1)
+                    .expectNext(0L)
+                    .expectNoEvent(Duration.ofMillis(50))
+                    .thenRequest(2)
+                    .expectNext(1L, 2L)
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void streamHasNoGapsNorDuplicatesUnderConcurrentAppends() throws InterruptedException {
+        int appenders = 4;
+        int appendsPerAppender = 500;
+        var streamed = eventStore.stream(0L, null)
+                                 .map(SequencedEvent::sequence)
+                                 .take(appenders * appendsPerAppender)
+                                 .collectList()
+                                 .toFuture();
+
+        var threads = new Thread[appenders];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < appendsPerAppender; j++) {
+                    eventStore.append(event(emptyPayload()))
+                              .block();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(LongStream.range(0L, appenders * appendsPerAppender).boxed().toList(),
+                     streamed.orTimeout(5, TimeUnit.SECONDS).join());
+    }
+
+    @Test
+    void streamsReceiveOnlyEventsMatchingTheirCriteria() {
+        var course1 = index("courseId", "course-1");
+        var course2 = index("courseId", "course-2");
+        var firstCourse = eventStore.stream(0L, anyOf(allOf(course1)))
+                                    .map(SequencedEvent::sequence)
+                                    .take(2)
+                                    .collectList()
+                                    .toFuture();
+        var secondCourse = eventStore.stream(0L, anyOf(allOf(course2)))
+                                     .map(SequencedEvent::sequence)
+                                     .take(1)
+                                     .collectList()
+                                     .toFuture();
+
+        eventStore.append(event(emptyPayload(), course1))
+                  .block();
+        eventStore.append(event(emptyPayload(), course2))
+                  .block();
+        eventStore.append(event(emptyPayload(), course1))
+                  .block();
+
+        assertEquals(List.of(0L, 2L), firstCourse.orTimeout(5, TimeUnit.SECONDS).join());
+        assertEquals(List.of(1L), secondCourse.orTimeout(5, TimeUnit.SECONDS).join());
+    }
+
+    /**
+     * Events read from some Event Stores carry copies of payloads, so they are compared by content.
+     */
+    protected static StoredEvent stored(SequencedEvent sequencedEvent) {
+        return stored(sequencedEvent.sequence(), sequencedEvent.event());
+    }
+
+    protected static StoredEvent stored(long sequence, Event event) {
+        return new StoredEvent(sequence, event.indices(), new String(event.payload()));
+    }
+
+    protected record StoredEvent(long sequence, Set<Index> indices, String payload) {
+
+    }
+
+    protected static byte[] emptyPayload() {
+        return new byte[]{};
+    }
+
+    protected static byte[] payload(String payload) {
+        return payload.getBytes();
+    }
+}
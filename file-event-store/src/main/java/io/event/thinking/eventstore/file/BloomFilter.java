@@ -0,0 +1,68 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Index;
+
+/**
+ * Bloom filter over the indices of a {@link SortedRun}, answering whether the run might hold sequences of an index
+ * without touching the run file. With {@value #BITS_PER_INDEX} bits per index and {@value #HASHES} hash functions,
+ * about 1% of absent indices are reported as possibly present; present indices are never reported as absent.
+ *
+ * <p>
+ * The filter is not persisted, it is built from the directory of the run when the run is opened.
+ * </p>
+ */
+final class BloomFilter {
+
+    private static final int BITS_PER_INDEX = 10;
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+    private final long bitCount;
+
+    /**
+     * @param expectedIndices the number of indices going to be {@link #add(Index) added}
+     */
+    BloomFilter(int expectedIndices) {
+        this.bits = new long[Math.max(1, (int) ((Math.max(1L, expectedIndices) * BITS_PER_INDEX + 63) / 64))];
+        this.bitCount = bits.length * 64L;
+    }
+
+    void add(Index index) {
+        long hash = hash(index);
+        long increment = (hash >>> 32) | 1L;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Long.remainderUnsigned(hash, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+            hash += increment;
+        }
+    }
+
+    /**
+     * @return {@code false} if the {@code index} was certainly not added, {@code true} if it might have been
+     */
+    boolean mightContain(Index index) {
+        long hash = hash(index);
+        long increment = (hash >>> 32) | 1L;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Long.remainderUnsigned(hash, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+            hash += increment;
+        }
+        return true;
+    }
+
+    /**
+     * Double hashing over a 64-bit mix of hashes of the key and the value of the {@code index}.
+     */
+    private static long hash(Index index) {
+        long hash = ((long) index.key().hashCode() << 32) ^ (index.value().hashCode() & 0xFFFFFFFFL);
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,89 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Criterion;
+import io.event.thinking.eventstore.api.Index;
+
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Keeps sequences of events per {@link Index}, so that reads and consistency checks of the {@link FileEventStore} only
+ * visit candidate events instead of scanning the whole log. See {@link CriteriaMatching} for how criteria are
+ * answered from {@link Postings}.
+ *
+ * <p>
+ * Sequences are added by the single appender thread of the Event Store. Readers must bound their iteration by a head
+ * published to them by other means.
+ * </p>
+ */
+interface CriteriaIndex extends AutoCloseable {
+
+    /**
+     * @return whether the {@code criteria} is matched by any event, in which case there is no need for the index
+     */
+    static boolean matchesAll(Criteria criteria) {
+        return criteria == null
+                || criteria.criteria().isEmpty()
+                || criteria.criteria().stream().anyMatch(criterion -> criterion.indices().isEmpty());
+    }
+
+    /**
+     * Loads the persisted state of this index. Called once, before anything is added.
+     *
+     * @param logHead the head of the recovered log, the index must not cover events beyond it
+     * @return the sequence from which events of the log have to be {@link #add(long, Set) added} again
+     */
+    long open(long logHead);
+
+    /**
+     * Indexes the event stored at the {@code sequence}. Sequences are added in ascending order, including events
+     * without indices.
+     */
+    void add(long sequence, Set<Index> indices);
+
+    /**
+     * @return sequences of events indexed with the {@code index}, or {@code null} if no event is indexed with it
+     */
+    Postings postings(Index index);
+
+    /**
+     * Selects sequences to visit for the {@code criterion}: sequences of its rarest index. Every event matching the
+     * {@code criterion} is among them, but not every one of them matches it if the {@code criterion} has multiple
+     * indices.
+     *
+     * @return candidate sequences, or {@code null} if one of the indices of the {@code criterion} is not used by any
+     * event
+     */
+    default Postings candidates(Criterion criterion) {
+        return rarest(criterion, this::postings);
+    }
+
+    /**
+     * @param postings looks up postings of an index, {@code null} if the index is not used by any event
+     * @return postings of the rarest index of the {@code criterion}, or {@code null} if one of its indices is not used
+     * by any event
+     */
+    static Postings rarest(Criterion criterion, Function<Index, Postings> postings) {
+        Postings rarest = null;
+        for (Index index : criterion.indices()) {
+            var indexPostings = postings.apply(index);
+            if (indexPostings == null) {
+                return null;
+            }
+            if (rarest == null || indexPostings.size() < rarest.size()) {
+                rarest = indexPostings;
+            }
+        }
+        return rarest;
+    }
+
+    /**
+     * Notifies the index that all events before the {@code head} are durable and visible to readers, so that they can
+     * be persisted by the index.
+     */
+    void committed(long head);
+
+    @Override
+    void close();
+}
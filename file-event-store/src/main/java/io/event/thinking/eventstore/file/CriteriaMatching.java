@@ -0,0 +1,167 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Criterion;
+import io.event.thinking.eventstore.api.Index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Answers criteria from a {@link CriteriaIndex}. For each criterion, only its
+ * {@link CriteriaIndex#candidates(Criterion) candidate sequences} are visited, merged in ascending order, or in
+ * descending order when reading backward. If any criterion has more indices, candidates are verified against indices
+ * stored in the log.
+ */
+final class CriteriaMatching implements PrimitiveIterator.OfLong {
+
+    private static final long END = Long.MAX_VALUE;
+    private static final long START = -1L;
+
+    private final Criteria criteria;
+    private final LongFunction<Set<Index>> indices;
+    private final boolean reverse;
+    private final long exhausted;
+    private final boolean verify;
+    private final PrimitiveIterator.OfLong[] iterators;
+    private final long[] heads;
+    private long next = -1L;
+
+    /**
+     * @param bound the inclusive sequence to start from, or the exclusive one when going in {@code reverse}
+     */
+    private CriteriaMatching(Criteria criteria,
+                             long bound,
+                             boolean reverse,
+                             CriteriaIndex index,
+                             LongFunction<Set<Index>> indices) {
+        this.criteria = criteria;
+        this.indices = indices;
+        this.reverse = reverse;
+        this.exhausted = reverse ? START : END;
+        List<Postings> candidates = new ArrayList<>();
+        boolean multipleIndices = false;
+        for (Criterion criterion : criteria.criteria()) {
+            var postings = index.candidates(criterion);
+            if (postings != null) {
+                candidates.add(postings);
+                multipleIndices |= criterion.indices().size() > 1;
+            }
+        }
+        this.verify = multipleIndices;
+        this.iterators = new PrimitiveIterator.OfLong[candidates.size()];
+        this.heads = new long[candidates.size()];
+        for (int i = 0; i < iterators.length; i++) {
+            var postings = candidates.get(i);
+            iterators[i] = reverse ? postings.reverseIterator(bound) : postings.iterator(bound);
+            heads[i] = iterators[i].hasNext() ? iterators[i].nextLong() : exhausted;
+        }
+    }
+
+    /**
+     * Streams sequences of events matching the {@code criteria}, starting from the {@code fromSequence} inclusively,
+     * in ascending order. The {@code criteria} must not {@link CriteriaIndex#matchesAll(Criteria) match all events}.
+     *
+     * @param indices provides indices of an event stored at a given sequence
+     */
+    static LongStream sequences(long fromSequence,
+                                Criteria criteria,
+                                CriteriaIndex index,
+                                LongFunction<Set<Index>> indices) {
+        return stream(new CriteriaMatching(criteria, fromSequence, false, index, indices),
+                      Spliterator.SORTED);
+    }
+
+    /**
+     * Streams sequences of events matching the {@code criteria}, going backward from the {@code toSequence}
+     * exclusively, in descending order. The {@code criteria} must not
+     * {@link CriteriaIndex#matchesAll(Criteria) match all events}.
+     *
+     * @param indices provides indices of an event stored at a given sequence
+     */
+    static LongStream reverseSequences(long toSequence,
+                                       Criteria criteria,
+                                       CriteriaIndex index,
+                                       LongFunction<Set<Index>> indices) {
+        return stream(new CriteriaMatching(criteria, toSequence, true, index, indices), 0);
+    }
+
+    private static LongStream stream(CriteriaMatching iterator, int sorted) {
+        int characteristics = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | sorted;
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(iterator, characteristics), false);
+    }
+
+    /**
+     * @param indices provides indices of an event stored at a given sequence
+     * @return whether any event between the {@code fromSequence} inclusively and the {@code toSequence} exclusively
+     * matches the {@code criteria}
+     */
+    static boolean matchesAny(long fromSequence,
+                              long toSequence,
+                              Criteria criteria,
+                              CriteriaIndex index,
+                              LongFunction<Set<Index>> indices) {
+        var matching = new CriteriaMatching(criteria, fromSequence, false, index, indices);
+        return matching.hasNext() && matching.nextLong() < toSequence;
+    }
+
+    /**
+     * Counts matching sequences without reading events, except for indices of candidates which have to be verified.
+     *
+     * @param indices provides indices of an event stored at a given sequence
+     * @return the number of events between the {@code fromSequence} inclusively and the {@code toSequence} exclusively
+     * matching the {@code criteria}
+     */
+    static long count(long fromSequence,
+                      long toSequence,
+                      Criteria criteria,
+                      CriteriaIndex index,
+                      LongFunction<Set<Index>> indices) {
+        var matching = new CriteriaMatching(criteria, fromSequence, false, index, indices);
+        long count = 0L;
+        while (matching.hasNext() && matching.nextLong() < toSequence) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next < 0) {
+            long candidate = exhausted;
+            for (long head : heads) {
+                candidate = reverse ? Math.max(candidate, head) : Math.min(candidate, head);
+            }
+            if (candidate == exhausted) {
+                return false;
+            }
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] == candidate) {
+                    heads[i] = iterators[i].hasNext() ? iterators[i].nextLong() : exhausted;
+                }
+            }
+            if (!verify || criteria.matches(indices.apply(candidate))) {
+                next = candidate;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long nextLong() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        long result = next;
+        next = -1L;
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.api.Index;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary format of an event stored in a {@link Segment}. Each record is laid out as:
+ * <pre>
+ * int   length of the body
+ * int   CRC32C checksum of the body
+ * body:
+ *   byte  flags, {@link #END_OF_TRANSACTION} marks the last event of a transaction
+ *   short number of indices
+ *   per index: short key length, key bytes, short value length, value bytes (UTF-8)
+ *   payload bytes, up to the end of the body
+ * </pre>
+ * A length of {@code 0} marks the end of written records, since segment files are preallocated with zeros. The
+ * checksum detects records torn by a crash in the middle of a write.
+ */
+final class EventRecord {
+
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+    static final byte END_OF_TRANSACTION = 1;
+
+    private static final int MAX_STRING_LENGTH = 0xFFFF;
+    private static final int INDICES_OFFSET = HEADER_SIZE + Byte.BYTES;
+
+    private EventRecord() {
+    }
+
+    /**
+     * Encodes the {@code event} into a buffer ready to be written.
+     *
+     * @param event            the event to encode
+     * @param endOfTransaction whether the event is the last one of its transaction
+     * @return the encoded record, flipped for reading
+     */
+    static ByteBuffer encode(Event event, boolean endOfTransaction) {
+        var indices = event.indices();
+        if (indices.size() > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("An event can have at most " + MAX_STRING_LENGTH + " indices");
+        }
+        var strings = new byte[indices.size() * 2][];
+        int bodySize = Byte.BYTES + Short.BYTES + event.payload().length;
+        int i = 0;
+        for (Index index : indices) {
+            strings[i] = bytes(index.key());
+            strings[i + 1] = bytes(index.value());
+            bodySize += 2 * Short.BYTES + strings[i].length + strings[i + 1].length;
+            i += 2;
+        }
+        var record = ByteBuffer.allocate(HEADER_SIZE + bodySize);
+        record.position(HEADER_SIZE);
+        record.put(endOfTransaction ? END_OF_TRANSACTION : 0);
+        record.putShort((short) indices.size());
+        for (byte[] string : strings) {
+            record.putShort((short) string.length);
+            record.put(string);
+        }
+        record.put(event.payload());
+
+        var checksum = new CRC32C();
+        checksum.update(record.array(), HEADER_SIZE, bodySize);
+        record.putInt(0, bodySize);
+        record.putInt(Integer.BYTES, (int) checksum.getValue());
+        return record.flip();
+    }
+
+    /**
+     * Returns the size of the record written at the {@code offset}, including its header, or {@code 0} if there is no
+     * valid record there.
+     */
+    static int validSize(ByteBuffer buffer, int offset) {
+        if (offset + HEADER_SIZE > buffer.capacity()) {
+            return 0;
+        }
+        int bodySize = buffer.getInt(offset);
+        if (bodySize <= 0 || bodySize > buffer.capacity() - offset - HEADER_SIZE) {
+            return 0;
+        }
+        var checksum = new CRC32C();
+        checksum.update(buffer.slice(offset + HEADER_SIZE, bodySize));
+        if ((int) checksum.getValue() != buffer.getInt(offset + Integer.BYTES)) {
+            return 0;
+        }
+        return HEADER_SIZE + bodySize;
+    }
+
+    /**
+     * @return whether the record at the {@code offset} is the last event of its transaction
+     */
+    static boolean endsTransaction(ByteBuffer buffer, int offset) {
+        return (buffer.get(offset + HEADER_SIZE) & END_OF_TRANSACTION) != 0;
+    }
+
+    /**
+     * Decodes indices of the record at the {@code offset}, leaving the payload untouched.
+     */
+    static Set<Index> indices(ByteBuffer buffer, int offset) {
+        int count = Short.toUnsignedInt(buffer.getShort(offset + INDICES_OFFSET));
+        if (count == 0) {
+            return Set.of();
+        }
+        var indices = new Index[count];
+        int position = offset + INDICES_OFFSET + Short.BYTES;
+        for (int i = 0; i < count; i++) {
+            var key = string(buffer, position);
+            position += Short.BYTES + Short.toUnsignedInt(buffer.getShort(position));
+            var value = string(buffer, position);
+            position += Short.BYTES + Short.toUnsignedInt(buffer.getShort(position));
+            indices[i] = Index.index(key, value);
+        }
+        return Set.of(indices);
+    }
+
+    /**
+     * Decodes the whole record at the {@code offset}.
+     */
+    static Event event(ByteBuffer buffer, int offset) {
+        return Event.event(indices(buffer, offset), payload(buffer, offset));
+    }
+
+    /**
+     * Decodes the payload of the record at the {@code offset}, skipping over its indices without decoding them.
+     */
+    static byte[] payload(ByteBuffer buffer, int offset) {
+        int count = Short.toUnsignedInt(buffer.getShort(offset + INDICES_OFFSET));
+        int position = offset + INDICES_OFFSET + Short.BYTES;
+        for (int i = 0; i < count * 2; i++) {
+            position += Short.BYTES + Short.toUnsignedInt(buffer.getShort(position));
+        }
+        var payload = new byte[offset + HEADER_SIZE + buffer.getInt(offset) - position];
+        buffer.get(position, payload);
+        return payload;
+    }
+
+    private static byte[] bytes(String string) {
+        var bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("Index keys and values must not exceed " + MAX_STRING_LENGTH + " bytes");
+        }
+        return bytes;
+    }
+
+    private static String string(ByteBuffer buffer, int position) {
+        var bytes = new byte[Short.toUnsignedInt(buffer.getShort(position))];
+        buffer.get(position + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,535 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.ConsistencyCondition;
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.api.EventStore;
+import io.event.thinking.eventstore.api.IndexedEvent;
+import io.event.thinking.eventstore.api.InvalidConsistencyConditionException;
+import io.event.thinking.eventstore.api.MarkedEventBatches;
+import io.event.thinking.eventstore.api.MarkedEvents;
+import io.event.thinking.eventstore.api.MarkedIndexedEvents;
+import io.event.thinking.eventstore.api.SequencedEvent;
+import io.event.thinking.eventstore.support.LiveStream;
+import io.event.thinking.eventstore.support.ParallelScan;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static io.event.thinking.eventstore.file.CriteriaIndex.matchesAll;
+
+/**
+ * Durable implementation of the {@link EventStore}, storing events in append-only segment files of a fixed size. See
+ * {@link FileEventStoreConfiguration} for the location and the size of segments.
+ *
+ * <p>
+ * Like the in-memory implementation, all appends are sequentialized on a single thread. Events are written through a
+ * {@link java.nio.channels.FileChannel}, and read through memory-mapped views of the same segment files, so reads
+ * never go through the appender and hold no locks. Each event is stored with a checksum, and the last event of each
+ * transaction is marked, so that a transaction is either fully visible after a restart or not at all.
+ * </p>
+ * <p>
+ * The segment files act as a write-ahead log with group commit. Append requests are queued and the appender drains
+ * them in batches: each request is validated and written, and the whole batch is then forced to the disk with a single
+ * force, as configured by the {@link FsyncPolicy}. Requests arriving while the appender waits for the disk form the
+ * next batch, so the cost of a force is shared by all appends waiting for it. An append is completed only once its
+ * batch is durable.
+ * </p>
+ * <p>
+ * A {@link CriteriaIndex} keeps sequences of events per index, so that reads and consistency checks only visit
+ * candidate events, going forward or, when {@link #readBackward(long, Criteria, int) reading backward}, from the
+ * latest event. By default, it is held in memory and periodically checkpointed into an {@link IndexSnapshot}. With
+ * {@link FileEventStoreConfiguration#onDiskIndex()}, it is kept on the disk as a log-structured merge tree instead. Either
+ * way, when the Event Store is opened, only events appended after the persisted part of the index are replayed from the
+ * segment files. See {@link FileEventStoreConfiguration#snapshotThreshold()}. Reads spanning many events can be
+ * {@link FileEventStoreConfiguration#parallelScanChunkSize() scanned in parallel}, in chunks of sequences merged back
+ * in order.
+ * </p>
+ * <p>
+ * The appender owns the head of the Event Store and publishes a separate committed watermark once written and indexed
+ * events are synced. A read captures the watermark once, as its consistency marker, and never goes past it, however
+ * late it is subscribed to. Hence reads never observe a partially appended transaction. Events below the watermark are
+ * never modified, so reads are isolated from concurrent appends without locking. {@link #stream(long, Criteria) Live
+ * streams} read events up to the committed watermark, and then wait for the appender to notify them about the next
+ * commit.
+ * </p>
+ * <p>
+ * The Event Store holds open files, and should be {@link #close() closed} when no longer used.
+ * </p>
+ */
+public class FileEventStore implements EventStore, AutoCloseable {
+
+    private final SegmentedFileLog log;
+    private final CriteriaIndex index;
+    private final Scheduler appender = Schedulers.newSingle("file-event-store-appender");
+    private final Queue<AppendRequest> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Set<Runnable> streamListeners = ConcurrentHashMap.newKeySet();
+    private final LiveStream.Source streamSource = new StreamSource();
+    private final FileEventStoreConfiguration configuration;
+    /**
+     * Written appends waiting to be synced. Only accessed by the appender.
+     */
+    private final List<Completion> unsynced = new ArrayList<>();
+    /**
+     * The position of the next event to be appended. Only accessed by the appender.
+     */
+    private long head;
+    /**
+     * The failure to force written events to the disk, after which appends are rejected. Only accessed by the
+     * appender.
+     */
+    private RuntimeException failure;
+    /**
+     * The position up to which (exclusively) appended events are visible to readers.
+     */
+    private volatile long committed;
+
+    /**
+     * Opens the Event Store with the given {@code configuration}, recovering events already stored in its directory.
+     *
+     * @param configuration the configuration
+     */
+    public FileEventStore(FileEventStoreConfiguration configuration) {
+        this.configuration = configuration;
+        this.log = SegmentedFileLog.open(configuration.directory(), configuration.segmentSize());
+        this.index = configuration.onDiskIndex()
+                ? new LsmCriteriaIndex(configuration.directory().resolve("index"), configuration.snapshotThreshold())
+                : new InMemoryCriteriaIndex(configuration.directory(), configuration.snapshotThreshold());
+        this.head = log.head();
+        for (long sequence = index.open(head); sequence < head; sequence++) {
+            index.add(sequence, log.indices(sequence));
+        }
+        this.committed = head;
+        if (configuration.fsyncPolicy() instanceof FsyncPolicy.Periodic periodic) {
+            long interval = periodic.interval().toNanos();
+            appender.schedulePeriodically(this::sync, interval, interval, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Mono<Long> append(List<Event> events, ConsistencyCondition consistencyCondition) {
+        return Mono.create(sink -> submit(new AppendRequest(events, consistencyCondition, sink)));
+    }
+
+    /**
+     * Queues the {@code request} and makes sure the appender is going to drain it. Requests submitted after the Event
+     * Store is {@link #close() closed} are rejected. A request queued while the Event Store is being closed is either
+     * drained by the appender before it stops, or rejected by whichever of {@link #close()} and this method takes it
+     * out of the queue first.
+     */
+    private void submit(AppendRequest request) {
+        if (closed.get()) {
+            request.sink().error(closedException());
+            return;
+        }
+        pending.offer(request);
+        boolean batchFull = pendingCount.incrementAndGet() >= configuration.maxBatchSize();
+        try {
+            if (drainScheduled.compareAndSet(false, true) || batchFull) {
+                appender.schedule(this::drain);
+            }
+        } catch (RejectedExecutionException e) {
+            // the appender is stopped by close, which rejects requests left in the queue
+        }
+        if (closed.get() && pending.remove(request)) {
+            pendingCount.decrementAndGet();
+            request.sink().error(closedException());
+        }
+    }
+
+    private static IllegalStateException closedException() {
+        return new IllegalStateException("The Event Store is closed");
+    }
+
+    /**
+     * Drains all pending requests in batches of at most {@link FileEventStoreConfiguration#maxBatchSize()}. Requests
+     * queued while the appender waits for the disk form the next batch. The flag is reset before polling, so a request
+     * queued concurrently either gets polled here or schedules a new drain.
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        List<AppendRequest> batch;
+        while (!(batch = nextBatch()).isEmpty()) {
+            commit(batch);
+        }
+    }
+
+    private List<AppendRequest> nextBatch() {
+        var batch = new ArrayList<AppendRequest>();
+        AppendRequest request;
+        while (batch.size() < configuration.maxBatchSize() && (request = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(request);
+        }
+        return batch;
+    }
+
+    /**
+     * Writes accepted requests of the {@code batch} one after the other, so that each request is validated against
+     * earlier accepted members of the batch as well. Unless the {@link FsyncPolicy} is periodic, the whole batch is
+     * then synced with a single force.
+     */
+    private void commit(List<AppendRequest> batch) {
+        for (AppendRequest request : batch) {
+            Object result;
+            if (failure != null) {
+                result = failure;
+            } else {
+                try {
+                    result = doAppend(request.events(), request.consistencyCondition());
+                } catch (RuntimeException e) {
+                    result = e;
+                }
+            }
+            unsynced.add(new Completion(request.sink(), result));
+        }
+        if (!(configuration.fsyncPolicy() instanceof FsyncPolicy.Periodic)) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces written events to the disk as required by the {@link FsyncPolicy}, publishes them to readers and
+     * completes their appends. If the force fails, it is unknown which of the written events reached the disk, so the
+     * Event Store stops accepting appends.
+     */
+    private void sync() {
+        if (unsynced.isEmpty()) {
+            return;
+        }
+        if (failure == null && !(configuration.fsyncPolicy() instanceof FsyncPolicy.OperatingSystem)) {
+            try {
+                log.force();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (failure == null) {
+            committed = head;
+            index.committed(head);
+            notifyCommit();
+        }
+        for (Completion completion : unsynced) {
+            if (completion.result() instanceof RuntimeException e) {
+                completion.sink().error(e);
+            } else if (failure != null) {
+                completion.sink().error(failure);
+            } else {
+                completion.sink().success((Long) completion.result());
+            }
+        }
+        unsynced.clear();
+    }
+
+    /**
+     * Wakes live streams, which resume reading if they wait for new events.
+     */
+    private void notifyCommit() {
+        streamListeners.forEach(Runnable::run);
+    }
+
+    @Override
+    public MarkedEvents read(long fromSequence, Criteria criteria) {
+        long consistencyMarker = committed;
+        Supplier<Flux<SequencedEvent>> sourced = () -> scan(fromSequence, consistencyMarker, criteria);
+        return new MarkedEvents(consistencyMarker, Flux.defer(sourced));
+    }
+
+    /**
+     * Scans events matching the {@code criteria} between {@code fromSequence} inclusively and {@code toSequence}
+     * exclusively. Ranges longer than the configured {@link FileEventStoreConfiguration#parallelScanChunkSize() chunk size}
+     * are scanned as a {@link ParallelScan}.
+     */
+    private Flux<SequencedEvent> scan(long fromSequence, long toSequence, Criteria criteria) {
+        long from = Math.max(fromSequence, 0L);
+        int chunkSize = configuration.parallelScanChunkSize();
+        if (chunkSize == 0 || toSequence - from <= chunkSize) {
+            return Flux.fromStream(matching(from, toSequence, criteria));
+        }
+        return ParallelScan.scan(from,
+                                 toSequence,
+                                 chunkSize,
+                                 (chunkFrom, chunkTo) -> matching(chunkFrom, chunkTo, criteria),
+                                 Schedulers.parallel());
+    }
+
+    /**
+     * Collects committed events into batches straight from the log, so that each batch costs a single signal.
+     */
+    @Override
+    public MarkedEventBatches readBatches(long fromSequence, Criteria criteria, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        long consistencyMarker = committed;
+        Supplier<Flux<List<SequencedEvent>>> sourced =
+                () -> Flux.fromIterable(() -> batches(matching(fromSequence, consistencyMarker, criteria), batchSize));
+        return new MarkedEventBatches(consistencyMarker, Flux.defer(sourced));
+    }
+
+    private static Iterator<List<SequencedEvent>> batches(Stream<SequencedEvent> events, int batchSize) {
+        var iterator = events.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public List<SequencedEvent> next() {
+                if (!iterator.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var batch = new ArrayList<SequencedEvent>(Math.min(batchSize, 1024));
+                while (batch.size() < batchSize && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                }
+                return batch;
+            }
+        };
+    }
+
+    /**
+     * Streams committed events matching the {@code criteria} between {@code fromSequence} inclusively and
+     * {@code toSequence} exclusively.
+     */
+    private Stream<SequencedEvent> matching(long fromSequence, long toSequence, Criteria criteria) {
+        return matchingSequences(fromSequence, toSequence, criteria).mapToObj(this::sequencedEvent);
+    }
+
+    private LongStream matchingSequences(long fromSequence, long toSequence, Criteria criteria) {
+        if (matchesAll(criteria)) {
+            return LongStream.range(Math.max(fromSequence, 0L), toSequence);
+        }
+        return CriteriaMatching.sequences(fromSequence, criteria, index, log::indices)
+                               .takeWhile(sequence -> sequence < toSequence);
+    }
+
+    /**
+     * Decodes only indices of matching events from the segment files. A payload is copied out of its segment only when
+     * asked for, which is possible as long as the Event Store is open.
+     */
+    @Override
+    public MarkedIndexedEvents readIndexed(long fromSequence, Criteria criteria) {
+        long consistencyMarker = committed;
+        Supplier<Flux<IndexedEvent>> sourced =
+                () -> Flux.fromStream(matchingSequences(fromSequence, consistencyMarker, criteria)
+                                              .mapToObj(this::indexedEvent));
+        return new MarkedIndexedEvents(consistencyMarker, Flux.defer(sourced));
+    }
+
+    /**
+     * Answered by the {@link CriteriaIndex}, reading only indices of candidate events which have to be verified, and
+     * never their payloads.
+     */
+    @Override
+    public Mono<Long> count(long fromSequence, Criteria criteria) {
+        return Mono.fromSupplier(() -> {
+            long toSequence = committed;
+            if (matchesAll(criteria)) {
+                return Math.max(toSequence - Math.max(fromSequence, 0L), 0L);
+            }
+            return CriteriaMatching.count(fromSequence, toSequence, criteria, index, log::indices);
+        });
+    }
+
+    /**
+     * Answered the same way consistency conditions are validated.
+     */
+    @Override
+    public Mono<Boolean> exists(long fromSequence, Criteria criteria) {
+        return Mono.fromSupplier(() -> matchesAny(fromSequence, committed, criteria));
+    }
+
+    /**
+     * Visits sequences of the {@link CriteriaIndex} from their end, so only the latest matching events are read from
+     * the segment files, and at most {@code limit} of them.
+     */
+    @Override
+    public MarkedEvents readBackward(long fromSequence, Criteria criteria, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        long consistencyMarker = committed;
+        Supplier<Flux<SequencedEvent>> sourced =
+                () -> Flux.fromStream(matchingBackward(fromSequence, consistencyMarker, criteria).limit(limit));
+        return new MarkedEvents(consistencyMarker, Flux.defer(sourced));
+    }
+
+    /**
+     * Streams committed events matching the {@code criteria} in descending order, from {@code fromSequence} inclusively
+     * down to the first event, but not from {@code toSequence} or beyond.
+     */
+    private Stream<SequencedEvent> matchingBackward(long fromSequence, long toSequence, Criteria criteria) {
+        long upper = Math.min(fromSequence, toSequence - 1);
+        if (matchesAll(criteria)) {
+            return LongStream.iterate(upper, sequence -> sequence >= 0, sequence -> sequence - 1)
+                             .mapToObj(this::sequencedEvent);
+        }
+        return CriteriaMatching.reverseSequences(upper + 1, criteria, index, log::indices)
+                               .mapToObj(this::sequencedEvent);
+    }
+
+    /**
+     * Streams events matching the {@code criteria} from the {@code fromSequence} on, reading them from the segment
+     * files as a {@link LiveStream} on one of {@link Schedulers#parallel() parallel} workers. The appender wakes streams
+     * waiting for new events once appended events are synced.
+     */
+    @Override
+    public Flux<SequencedEvent> stream(long fromSequence, Criteria criteria) {
+        return Flux.create(sink -> LiveStream.start(streamSource, fromSequence, criteria, sink,
+                                                    Schedulers.parallel()));
+    }
+
+    private IndexedEvent indexedEvent(long sequence) {
+        return IndexedEvent.indexedEvent(sequence, log.indices(sequence), () -> log.payload(sequence));
+    }
+
+    private SequencedEvent sequencedEvent(long sequence) {
+        return SequencedEvent.sequencedEvent(sequence, log.event(sequence));
+    }
+
+    /**
+     * Validates the {@code consistencyCondition}, writes the transaction of {@code events} to the log and indexes it.
+     * Events are encoded upfront, so that an invalid event fails the append before anything is written. If writing
+     * fails half-way, the log is truncated back to the previous head.
+     */
+    private long doAppend(List<Event> events, ConsistencyCondition consistencyCondition) {
+        if (consistencyCondition != null && !validate(consistencyCondition)) {
+            throw new InvalidConsistencyConditionException();
+        }
+
+        var records = new ByteBuffer[events.size()];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = EventRecord.encode(events.get(i), i == records.length - 1);
+        }
+        try {
+            for (ByteBuffer record : records) {
+                log.append(record);
+            }
+        } catch (RuntimeException e) {
+            log.truncate(head);
+            throw e;
+        }
+        for (Event event : events) {
+            index.add(head++, event.indices());
+        }
+        return head - 1;
+    }
+
+    /**
+     * Matches the {@code consistencyCondition} with events starting from the consistency marker. If no match is found,
+     * the append request is valid.
+     */
+    private boolean validate(ConsistencyCondition consistencyCondition) {
+        return !matchesAny(consistencyCondition.consistencyMarker(), head, consistencyCondition.criteria());
+    }
+
+    /**
+     * Checks whether any event between {@code fromSequence} inclusively and {@code toSequence} exclusively matches the
+     * {@code criteria}, without reading payloads.
+     */
+    private boolean matchesAny(long fromSequence, long toSequence, Criteria criteria) {
+        if (matchesAll(criteria)) {
+            return Math.max(fromSequence, 0L) < toSequence;
+        }
+        return CriteriaMatching.matchesAny(fromSequence, toSequence, criteria, index, log::indices);
+    }
+
+    /**
+     * Stops accepting appends, and lets the appender write pending appends and force all written events to the disk,
+     * whatever the {@link FsyncPolicy}, completing every append accepted before. Appends submitted while closing are
+     * either written the same way or rejected. The appender is stopped only then, after which the index is persisted as
+     * far as it is configured to, and segment files are closed. Closing an already closed Event Store has no effect.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Mono.fromRunnable(this::shutdown)
+                .subscribeOn(appender)
+                .block();
+        } finally {
+            appender.dispose();
+            AppendRequest request;
+            while ((request = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                request.sink().error(closedException());
+            }
+            index.close();
+            log.close();
+        }
+    }
+
+    /**
+     * Drains the appends pending on closing, and forces all written events. Runs on the appender.
+     */
+    private void shutdown() {
+        drain();
+        sync();
+        if (failure == null && configuration.fsyncPolicy() instanceof FsyncPolicy.OperatingSystem) {
+            log.force();
+        }
+    }
+
+    private final class StreamSource implements LiveStream.Source {
+
+        @Override
+        public long committed() {
+            return committed;
+        }
+
+        @Override
+        public Stream<SequencedEvent> matching(long fromSequence, long toSequence, Criteria criteria) {
+            return FileEventStore.this.matching(fromSequence, toSequence, criteria);
+        }
+
+        /**
+         * Streams are woken after every commit regardless of their criteria, and check for matching events themselves.
+         */
+        @Override
+        public Disposable subscribe(Criteria criteria, Runnable listener) {
+            streamListeners.add(listener);
+            return () -> streamListeners.remove(listener);
+        }
+    }
+
+    private record AppendRequest(List<Event> events,
+                                 ConsistencyCondition consistencyCondition,
+                                 MonoSink<Long> sink) {
+
+    }
+
+    /**
+     * The outcome of a written append request, either the sequence of its last event or the failure, held back until
+     * the request is synced.
+     */
+    private record Completion(MonoSink<Long> sink, Object result) {
+
+    }
+}
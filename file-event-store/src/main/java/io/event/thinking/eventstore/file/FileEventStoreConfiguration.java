@@ -0,0 +1,137 @@
+package io.event.thinking.eventstore.file;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration of the {@link FileEventStore}.
+ *
+ * @param directory             the directory holding segment files of the Event Store
+ * @param segmentSize           the size of each segment file in bytes. A single event, together with its indices, must
+ *                              fit into one segment.
+ * @param maxBatchSize          the maximum number of append requests written and forced to the disk together in a
+ *                              single batch
+ * @param fsyncPolicy           determines when written events are forced to the disk
+ * @param snapshotThreshold     the number of events appended since the last snapshot of the index after which a new
+ *                              snapshot is taken. Opening the Event Store replays at most this many events, plus the
+ *                              ones appended while the snapshot is written. With the on-disk index, the number of
+ *                              events held in memory before they are written into a sorted run.
+ * @param onDiskIndex           whether the index is kept on the disk as a log-structured merge tree instead of fully in
+ *                              memory, bounding memory used by the index at the cost of slower lookups
+ * @param parallelScanChunkSize the number of sequences in a range matched by a single task when a read is scanned in
+ *                              parallel. Reads spanning more sequences than this are split into such ranges, matched on
+ *                              {@link reactor.core.scheduler.Schedulers#parallel() parallel} workers. {@code 0}
+ *                              disables parallel scans.
+ */
+public record FileEventStoreConfiguration(Path directory,
+                                          int segmentSize,
+                                          int maxBatchSize,
+                                          FsyncPolicy fsyncPolicy,
+                                          long snapshotThreshold,
+                                          boolean onDiskIndex,
+                                          int parallelScanChunkSize) {
+
+    /**
+     * Validates the configuration.
+     */
+    public FileEventStoreConfiguration {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory must be provided");
+        }
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("segmentSize must be positive");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        if (fsyncPolicy == null) {
+            throw new IllegalArgumentException("fsyncPolicy must be provided");
+        }
+        if (snapshotThreshold < 1) {
+            throw new IllegalArgumentException("snapshotThreshold must be positive");
+        }
+        if (parallelScanChunkSize < 0) {
+            throw new IllegalArgumentException("parallelScanChunkSize must not be negative");
+        }
+    }
+
+    /**
+     * Factory method for the default {@link FileEventStoreConfiguration}: segments of 64 MiB stored in the given
+     * {@code directory}, with batches of up to 256 append requests forced to the disk
+     * {@link FsyncPolicy#everyBatch() before they are completed}, and a snapshot of the index taken every 100 000
+     * events. The index is held in memory, and reads are scanned sequentially.
+     *
+     * @param directory the directory holding segment files of the Event Store
+     * @return the default configuration
+     */
+    public static FileEventStoreConfiguration defaultConfiguration(Path directory) {
+        return new FileEventStoreConfiguration(directory, 64 * 1024 * 1024, 256, FsyncPolicy.everyBatch(), 100_000L,
+                                               false, 0);
+    }
+
+    /**
+     * Creates a copy of this configuration with given {@code segmentSize}.
+     *
+     * @param segmentSize the size of each segment file in bytes
+     * @return the new configuration
+     */
+    public FileEventStoreConfiguration withSegmentSize(int segmentSize) {
+        return new FileEventStoreConfiguration(directory, segmentSize, maxBatchSize, fsyncPolicy, snapshotThreshold,
+                                               onDiskIndex, parallelScanChunkSize);
+    }
+
+    /**
+     * Creates a copy of this configuration with given {@code maxBatchSize}.
+     *
+     * @param maxBatchSize the maximum number of append requests written and forced together
+     * @return the new configuration
+     */
+    public FileEventStoreConfiguration withMaxBatchSize(int maxBatchSize) {
+        return new FileEventStoreConfiguration(directory, segmentSize, maxBatchSize, fsyncPolicy, snapshotThreshold,
+                                               onDiskIndex, parallelScanChunkSize);
+    }
+
+    /**
+     * Creates a copy of this configuration with given {@code fsyncPolicy}.
+     *
+     * @param fsyncPolicy determines when written events are forced to the disk
+     * @return the new configuration
+     */
+    public FileEventStoreConfiguration withFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        return new FileEventStoreConfiguration(directory, segmentSize, maxBatchSize, fsyncPolicy, snapshotThreshold,
+                                               onDiskIndex, parallelScanChunkSize);
+    }
+
+    /**
+     * Creates a copy of this configuration with given {@code snapshotThreshold}.
+     *
+     * @param snapshotThreshold the number of events appended after which a new snapshot of the index is taken
+     * @return the new configuration
+     */
+    public FileEventStoreConfiguration withSnapshotThreshold(long snapshotThreshold) {
+        return new FileEventStoreConfiguration(directory, segmentSize, maxBatchSize, fsyncPolicy, snapshotThreshold,
+                                               onDiskIndex, parallelScanChunkSize);
+    }
+
+    /**
+     * Creates a copy of this configuration with given {@code onDiskIndex}.
+     *
+     * @param onDiskIndex whether the index is kept on the disk instead of fully in memory
+     * @return the new configuration
+     */
+    public FileEventStoreConfiguration withOnDiskIndex(boolean onDiskIndex) {
+        return new FileEventStoreConfiguration(directory, segmentSize, maxBatchSize, fsyncPolicy, snapshotThreshold,
+                                               onDiskIndex, parallelScanChunkSize);
+    }
+
+    /**
+     * Creates a copy of this configuration with given {@code parallelScanChunkSize}.
+     *
+     * @param parallelScanChunkSize the number of sequences matched by a single task of a parallel scan, {@code 0} to
+     *                              scan sequentially
+     * @return the new configuration
+     */
+    public FileEventStoreConfiguration withParallelScanChunkSize(int parallelScanChunkSize) {
+        return new FileEventStoreConfiguration(directory, segmentSize, maxBatchSize, fsyncPolicy, snapshotThreshold,
+                                               onDiskIndex, parallelScanChunkSize);
+    }
+}
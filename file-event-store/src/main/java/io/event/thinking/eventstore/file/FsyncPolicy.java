@@ -0,0 +1,72 @@
+package io.event.thinking.eventstore.file;
+
+import java.time.Duration;
+
+/**
+ * Determines when the {@link FileEventStore} forces written events to the disk. An append is completed, and its events
+ * become visible to readers, only once they are durable according to the policy.
+ */
+public sealed interface FsyncPolicy {
+
+    /**
+     * Forces each batch of appends to the disk before completing them. Concurrent appends joining the same batch share
+     * a single force.
+     *
+     * @return the policy
+     */
+    static FsyncPolicy everyBatch() {
+        return new EveryBatch();
+    }
+
+    /**
+     * Forces written events to the disk periodically. Appends are completed with the first force after they are
+     * written, so they wait up to the given {@code interval}, and all appends written in the meantime share that
+     * force.
+     *
+     * @param interval the time between two forces
+     * @return the policy
+     */
+    static FsyncPolicy every(Duration interval) {
+        return new Periodic(interval);
+    }
+
+    /**
+     * Leaves flushing of written events to the operating system. Appends are completed as soon as they are written,
+     * and may be lost if the machine crashes.
+     *
+     * @return the policy
+     */
+    static FsyncPolicy operatingSystem() {
+        return new OperatingSystem();
+    }
+
+    /**
+     * @see #everyBatch()
+     */
+    record EveryBatch() implements FsyncPolicy {
+
+    }
+
+    /**
+     * @param interval the time between two forces
+     * @see #every(Duration)
+     */
+    record Periodic(Duration interval) implements FsyncPolicy {
+
+        /**
+         * Validates the interval.
+         */
+        public Periodic {
+            if (interval == null || interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("interval must be positive");
+            }
+        }
+    }
+
+    /**
+     * @see #operatingSystem()
+     */
+    record OperatingSystem() implements FsyncPolicy {
+
+    }
+}
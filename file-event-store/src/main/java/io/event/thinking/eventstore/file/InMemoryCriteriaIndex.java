@@ -0,0 +1,88 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Index;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link CriteriaIndex} held in memory as a single {@link SequenceIndex}. The index is periodically checkpointed into
+ * an {@link IndexSnapshot} in the background, and when the Event Store is opened, it is loaded from the latest
+ * snapshot, so that only events appended after it are replayed from the log.
+ */
+final class InMemoryCriteriaIndex implements CriteriaIndex {
+
+    private final SequenceIndex sequences = new SequenceIndex();
+    private final Path directory;
+    private final long snapshotThreshold;
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    /**
+     * The head covered by the latest snapshot of the index.
+     */
+    private volatile long snapshotHead;
+    /**
+     * The latest committed head the index was notified about.
+     */
+    private volatile long committed;
+
+    /**
+     * @param directory         the directory holding the snapshot
+     * @param snapshotThreshold the number of committed events after which a new snapshot is taken
+     */
+    InMemoryCriteriaIndex(Path directory, long snapshotThreshold) {
+        this.directory = directory;
+        this.snapshotThreshold = snapshotThreshold;
+    }
+
+    @Override
+    public long open(long logHead) {
+        snapshotHead = IndexSnapshot.load(directory, sequences, logHead);
+        committed = logHead;
+        return snapshotHead;
+    }
+
+    @Override
+    public void add(long sequence, Set<Index> indices) {
+        sequences.add(sequence, indices);
+    }
+
+    @Override
+    public Postings postings(Index index) {
+        return sequences.postings(index);
+    }
+
+    /**
+     * Takes a snapshot of the index in the background once enough events were committed since the previous one. The
+     * snapshot covers committed events only, and is taken while the appender keeps appending.
+     */
+    @Override
+    public void committed(long head) {
+        committed = head;
+        if (head - snapshotHead >= snapshotThreshold && snapshotScheduled.compareAndSet(false, true)) {
+            Schedulers.boundedElastic().schedule(() -> {
+                try {
+                    snapshot(head);
+                } finally {
+                    snapshotScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private synchronized void snapshot(long head) {
+        if (head > snapshotHead) {
+            IndexSnapshot.write(directory, sequences, head);
+            snapshotHead = head;
+        }
+    }
+
+    /**
+     * Takes a snapshot covering all committed events.
+     */
+    @Override
+    public void close() {
+        snapshot(committed);
+    }
+}
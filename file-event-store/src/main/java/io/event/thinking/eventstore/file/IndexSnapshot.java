@@ -0,0 +1,182 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Checkpoint of the {@link SequenceIndex} of a {@link FileEventStore}, so that opening the Event Store only replays
+ * events appended after the checkpoint instead of the whole log. The snapshot file is laid out as:
+ * <pre>
+ * int  magic number
+ * int  format version
+ * long head, all events before it are covered by the snapshot
+ * int  number of indices
+ * per index: key and value (modified UTF-8), number of sequences, varint deltas between consecutive sequences
+ * long CRC32C checksum of everything above
+ * </pre>
+ * The last sequence of each index is its last entry. A snapshot is written to a temporary file first, forced to the
+ * disk and then atomically moved over the previous one, so a crash never leaves a partially written snapshot behind.
+ */
+final class IndexSnapshot {
+
+    private static final String FILE_NAME = "index.snapshot";
+    private static final String TEMPORARY_FILE_NAME = FILE_NAME + ".tmp";
+    private static final int MAGIC = 0x45534958;
+    private static final int VERSION = 1;
+
+    private IndexSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the {@code index} covering events before the {@code head} into the {@code directory},
+     * replacing the previous snapshot.
+     */
+    static void write(Path directory, SequenceIndex index, long head) {
+        var temporary = directory.resolve(TEMPORARY_FILE_NAME);
+        var checksum = new CRC32C();
+        try (var output = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)), checksum))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(head);
+            // indices added concurrently only have sequences from the head on, so both passes visit the same indices
+            var count = new int[1];
+            index.forEach(head, (i, sequences) -> count[0]++);
+            output.writeInt(count[0]);
+            index.forEach(head, (i, sequences) -> writeIndex(output, i, sequences));
+            output.writeLong(checksum.getValue());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            try (var channel = FileChannel.open(temporary, WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, directory.resolve(FILE_NAME), ATOMIC_MOVE, REPLACE_EXISTING);
+            try (var channel = FileChannel.open(directory, READ)) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeIndex(DataOutputStream output, Index index, long[] sequences) {
+        try {
+            output.writeUTF(index.key());
+            output.writeUTF(index.value());
+            output.writeInt(sequences.length);
+            long previous = 0L;
+            for (long sequence : sequences) {
+                writeVarLong(output, sequence - previous);
+                previous = sequence;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads the snapshot stored in the {@code directory} into the empty {@code index}. A snapshot covering events
+     * beyond the {@code logHead} is deleted instead, since the log lost its tail after the snapshot was written, and
+     * events appended from now on would take different sequences than the ones in the snapshot.
+     *
+     * @return the head covered by the loaded snapshot, or {@code 0} if there is no valid snapshot to load
+     */
+    static long load(Path directory, SequenceIndex index, long logHead) {
+        var file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return 0L;
+        }
+        long head = read(file, index, logHead);
+        if (head > logHead) {
+            try {
+                Files.delete(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return 0L;
+        }
+        return Math.max(head, 0L);
+    }
+
+    /**
+     * @return the head covered by the snapshot, which is loaded only if it does not exceed the {@code logHead}, or
+     * {@code -1} if the snapshot is not valid
+     */
+    private static long read(Path file, SequenceIndex index, long logHead) {
+        var checksum = new CRC32C();
+        var loaded = new HashMap<Index, long[]>();
+        try (var input = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), checksum))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return -1L;
+            }
+            long head = input.readLong();
+            if (head > logHead) {
+                return head;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                var key = input.readUTF();
+                var value = input.readUTF();
+                int size = input.readInt();
+                if (size < 1 || size > head) {
+                    return -1L;
+                }
+                var sequences = new long[size];
+                long previous = 0L;
+                for (int j = 0; j < sequences.length; j++) {
+                    previous += readVarLong(input);
+                    sequences[j] = previous;
+                }
+                loaded.put(Index.index(key, value), sequences);
+            }
+            if (checksum.getValue() != input.readLong()) {
+                return -1L;
+            }
+            loaded.forEach(index::load);
+            return head;
+        } catch (IOException | RuntimeException e) {
+            return -1L;
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream input) throws IOException {
+        long value = 0L;
+        int shift = 0;
+        byte b;
+        do {
+            b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
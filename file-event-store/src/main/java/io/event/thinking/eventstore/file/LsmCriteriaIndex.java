@@ -0,0 +1,416 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Criterion;
+import io.event.thinking.eventstore.api.Index;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * {@link CriteriaIndex} kept on the disk as a log-structured merge tree, so that its memory footprint does not grow
+ * with the number of stored events.
+ *
+ * <p>
+ * Appended events are indexed into an in-memory memtable. Once it covers
+ * {@link FileEventStoreConfiguration#snapshotThreshold()} committed events, it is frozen and a new memtable takes its
+ * place, while the frozen one is written into an immutable {@link SortedRun} in the background. Each run covers a
+ * range of sequences directly following the previous one. Once there are more than {@value #MAX_RUNS} runs, the
+ * adjacent pair of runs with the smallest combined size is merged into one, so the number of runs a lookup visits
+ * stays bounded while each event is rewritten only a logarithmic number of times.
+ * </p>
+ * <p>
+ * Most runs hold no events of a given course or student, since such events cluster in time. Each run carries a
+ * {@link BloomFilter} over its indices, and criteria are answered run by run, so a run is skipped without touching its
+ * file whenever its filter rules out one of the indices of a criterion. See {@link #statistics()}.
+ * </p>
+ * <p>
+ * The set of runs and memtables is published as an immutable {@link View}, so readers never block the appender nor
+ * the background writer. Runs replaced by a merge are deleted, but stay mapped for readers still holding them.
+ * </p>
+ * <p>
+ * When the Event Store is opened, the longest chain of runs starting from the first event is kept, and events after
+ * it are replayed from the log into the memtable. Memtables not yet written are therefore never lost, only replayed.
+ * </p>
+ */
+final class LsmCriteriaIndex implements CriteriaIndex {
+
+    private static final int MAX_RUNS = 8;
+    private static final long MAX_RUN_SIZE = 1L << 30;
+
+    private final Path directory;
+    private final long memtableSize;
+    private final Scheduler writer = Schedulers.newSingle("file-event-store-index");
+    private final Object writeLock = new Object();
+    private final LongAdder runLookups = new LongAdder();
+    private final LongAdder runsSkipped = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private volatile View view = new View(List.of(), List.of(), new Memtable(0L));
+    private volatile boolean closed;
+
+    /**
+     * @param directory    the directory holding run files
+     * @param memtableSize the number of committed events after which the memtable is written into a run
+     */
+    LsmCriteriaIndex(Path directory, long memtableSize) {
+        this.directory = directory;
+        this.memtableSize = memtableSize;
+    }
+
+    /**
+     * Keeps the longest chain of runs starting from the first event and ending at or before the {@code logHead}, and
+     * deletes all other run files, including temporary ones left behind by a crash.
+     */
+    @Override
+    public long open(long logHead) {
+        try {
+            Files.createDirectories(directory);
+            var ranges = new TreeMap<Long, List<Path>>();
+            List<Path> files;
+            try (Stream<Path> listed = Files.list(directory)) {
+                files = listed.toList();
+            }
+            for (Path file : files) {
+                var range = SortedRun.range(file);
+                if (range != null && range[1] <= logHead) {
+                    ranges.computeIfAbsent(range[0], from -> new ArrayList<>()).add(file);
+                }
+            }
+            var runs = new ArrayList<SortedRun>();
+            long position = 0L;
+            SortedRun run;
+            while ((run = longest(ranges.getOrDefault(position, List.of()))) != null) {
+                runs.add(run);
+                position = run.to();
+            }
+            var kept = runs.stream().map(SortedRun::path).toList();
+            for (Path file : files) {
+                if (!kept.contains(file)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            view = new View(List.copyOf(runs), List.of(), new Memtable(position));
+            return position;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the valid run covering the most events out of the {@code candidates}, or {@code null} if there is none
+     */
+    private static SortedRun longest(List<Path> candidates) {
+        var ordered = candidates.stream()
+                                .sorted(Comparator.comparingLong((Path file) -> SortedRun.range(file)[1]).reversed())
+                                .toList();
+        for (Path file : ordered) {
+            try {
+                return SortedRun.open(file);
+            } catch (UncheckedIOException e) {
+                // not a valid run, deleted together with other runs outside the chain
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void add(long sequence, Set<Index> indices) {
+        view.active().sequences().add(sequence, indices);
+    }
+
+    @Override
+    public Postings postings(Index index) {
+        var current = view;
+        var parts = new ArrayList<Postings>();
+        for (SortedRun run : current.runs()) {
+            if (run.mightContain(index)) {
+                addIfPresent(parts, run.postings(index));
+            }
+        }
+        for (Memtable memtable : current.frozen()) {
+            addIfPresent(parts, memtable.sequences().postings(index));
+        }
+        addIfPresent(parts, current.active().sequences().postings(index));
+        return chain(parts);
+    }
+
+    /**
+     * Selects candidates of the {@code criterion} in each run and memtable separately: a part is skipped as soon as
+     * one of the indices of the {@code criterion} is absent from it, as told by the {@link BloomFilter} of a run, and
+     * otherwise sequences of the index rarest in that part are visited.
+     */
+    @Override
+    public Postings candidates(Criterion criterion) {
+        var current = view;
+        var parts = new ArrayList<Postings>();
+        for (SortedRun run : current.runs()) {
+            addIfPresent(parts, candidates(run, criterion));
+        }
+        for (Memtable memtable : current.frozen()) {
+            addIfPresent(parts, CriteriaIndex.rarest(criterion, memtable.sequences()::postings));
+        }
+        addIfPresent(parts, CriteriaIndex.rarest(criterion, current.active().sequences()::postings));
+        return chain(parts);
+    }
+
+    private Postings candidates(SortedRun run, Criterion criterion) {
+        runLookups.increment();
+        for (Index index : criterion.indices()) {
+            if (!run.mightContain(index)) {
+                runsSkipped.increment();
+                return null;
+            }
+        }
+        var candidates = CriteriaIndex.rarest(criterion, run::postings);
+        if (candidates == null) {
+            falsePositives.increment();
+        }
+        return candidates;
+    }
+
+    /**
+     * @return how often runs were skipped by their Bloom filters while selecting candidates of criteria
+     */
+    RunFilterStatistics statistics() {
+        return new RunFilterStatistics(runLookups.sum(), runsSkipped.sum(), falsePositives.sum());
+    }
+
+    /**
+     * @return the number of runs currently visible to readers
+     */
+    int runCount() {
+        return view.runs().size();
+    }
+
+    private static Postings chain(List<Postings> parts) {
+        return switch (parts.size()) {
+            case 0 -> null;
+            case 1 -> parts.getFirst();
+            default -> new ChainedPostings(parts);
+        };
+    }
+
+    private static void addIfPresent(List<Postings> parts, Postings postings) {
+        if (postings != null) {
+            parts.add(postings);
+        }
+    }
+
+    /**
+     * Freezes the memtable once it covers enough committed events, and writes it into a run in the background. Once
+     * the index is closed, memtables are kept as they are, to be replayed from the log.
+     */
+    @Override
+    public void committed(long head) {
+        var current = view;
+        if (closed || head - current.active().from() < memtableSize) {
+            return;
+        }
+        current.active().to = head;
+        replace(latest -> {
+            var frozen = new ArrayList<>(latest.frozen());
+            frozen.add(latest.active());
+            return new View(latest.runs(), List.copyOf(frozen), new Memtable(head));
+        });
+        writer.schedule(this::write);
+    }
+
+    /**
+     * Writes all frozen memtables into runs, oldest first, and merges runs if there are too many of them.
+     */
+    private void write() {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            List<Memtable> frozen;
+            while (!(frozen = view.frozen()).isEmpty()) {
+                var memtable = frozen.getFirst();
+                var entries = new TreeMap<Index, long[]>(SortedRun.ORDER);
+                memtable.sequences().forEach(memtable.to, entries::put);
+                var run = SortedRun.write(directory, memtable.from(), memtable.to, entries.entrySet().iterator());
+                replace(current -> {
+                    var runs = new ArrayList<>(current.runs());
+                    runs.add(run);
+                    var written = current.frozen().subList(1, current.frozen().size());
+                    return new View(List.copyOf(runs), List.copyOf(written), current.active());
+                });
+            }
+            while (view.runs().size() > MAX_RUNS && merge()) {
+                // keep merging until the number of runs is bounded again
+            }
+        }
+    }
+
+    /**
+     * Merges the adjacent pair of runs with the smallest combined size.
+     *
+     * @return whether a pair was merged
+     */
+    private boolean merge() {
+        var runs = view.runs();
+        int smallest = -1;
+        for (int i = 0; i + 1 < runs.size(); i++) {
+            long size = runs.get(i).size() + runs.get(i + 1).size();
+            if (size < MAX_RUN_SIZE
+                    && (smallest < 0 || size < runs.get(smallest).size() + runs.get(smallest + 1).size())) {
+                smallest = i;
+            }
+        }
+        if (smallest < 0) {
+            return false;
+        }
+        var inputs = runs.subList(smallest, smallest + 2);
+        var merged = SortedRun.merge(directory, inputs);
+        int position = smallest;
+        replace(current -> {
+            var replaced = new ArrayList<>(current.runs());
+            replaced.subList(position, position + 2).clear();
+            replaced.add(position, merged);
+            return new View(List.copyOf(replaced), current.frozen(), current.active());
+        });
+        inputs.forEach(SortedRun::delete);
+        return true;
+    }
+
+    /**
+     * Publishes a new view. Both the appender and the background writer change the view, each only its own part.
+     */
+    private synchronized void replace(UnaryOperator<View> change) {
+        view = change.apply(view);
+    }
+
+    /**
+     * Stops writing runs, waiting for runs being written or merged. Memtables not yet written are replayed from the
+     * log when the Event Store is opened again.
+     */
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            closed = true;
+        }
+        writer.dispose();
+    }
+
+    /**
+     * Counts of lookups of criteria in runs.
+     *
+     * @param lookups        the number of times a run was looked up for candidates of a criterion
+     * @param skipped        the number of lookups answered by the Bloom filter of the run, without touching the file
+     * @param falsePositives the number of lookups passing the Bloom filter, although the run had no candidates
+     */
+    record RunFilterStatistics(long lookups, long skipped, long falsePositives) {
+
+        /**
+         * @return the share of lookups skipped by Bloom filters, between 0 and 1
+         */
+        double skippedShare() {
+            return lookups == 0 ? 0.0 : (double) skipped / lookups;
+        }
+    }
+
+    /**
+     * Runs, frozen memtables being written, and the active memtable, together covering all indexed events in order.
+     */
+    private record View(List<SortedRun> runs, List<Memtable> frozen, Memtable active) {
+
+    }
+
+    /**
+     * In-memory index of events starting from {@code from}. Once frozen, it covers events up to {@code to}.
+     */
+    private static final class Memtable {
+
+        private final SequenceIndex sequences = new SequenceIndex();
+        private final long from;
+        private long to;
+
+        private Memtable(long from) {
+            this.from = from;
+        }
+
+        SequenceIndex sequences() {
+            return sequences;
+        }
+
+        long from() {
+            return from;
+        }
+    }
+
+    /**
+     * Sequences of an index spread over consecutive runs and memtables.
+     */
+    private record ChainedPostings(List<Postings> parts) implements Postings {
+
+        @Override
+        public long size() {
+            long size = 0L;
+            for (Postings part : parts) {
+                size += part.size();
+            }
+            return size;
+        }
+
+        @Override
+        public PrimitiveIterator.OfLong iterator(long fromSequence) {
+            return new PrimitiveIterator.OfLong() {
+                private int part = 0;
+                private PrimitiveIterator.OfLong current = parts.getFirst().iterator(fromSequence);
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && part + 1 < parts.size()) {
+                        current = parts.get(++part).iterator(fromSequence);
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public long nextLong() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.nextLong();
+                }
+            };
+        }
+
+        @Override
+        public PrimitiveIterator.OfLong reverseIterator(long toSequence) {
+            return new PrimitiveIterator.OfLong() {
+                private int part = parts.size() - 1;
+                private PrimitiveIterator.OfLong current = parts.getLast().reverseIterator(toSequence);
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && part > 0) {
+                        current = parts.get(--part).reverseIterator(toSequence);
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public long nextLong() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.nextLong();
+                }
+            };
+        }
+    }
+}
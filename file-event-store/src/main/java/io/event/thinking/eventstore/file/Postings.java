@@ -0,0 +1,26 @@
+package io.event.thinking.eventstore.file;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * Ascending sequences of events sharing an index, as seen by a {@link CriteriaIndex} at the time they were looked up.
+ */
+interface Postings {
+
+    /**
+     * @return the number of sequences, used to pick the rarest index of a criterion
+     */
+    long size();
+
+    /**
+     * @param fromSequence the inclusive sequence to start from
+     * @return an iterator over sequences starting from the {@code fromSequence}, in ascending order
+     */
+    PrimitiveIterator.OfLong iterator(long fromSequence);
+
+    /**
+     * @param toSequence the exclusive sequence to start from, going backward
+     * @return an iterator over sequences before the {@code toSequence}, in descending order
+     */
+    PrimitiveIterator.OfLong reverseIterator(long toSequence);
+}
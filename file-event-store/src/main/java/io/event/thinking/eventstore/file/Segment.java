@@ -0,0 +1,204 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.api.Index;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A fixed-size, append-only segment file holding consecutive events starting at its {@link #baseSequence()}. The file
+ * is preallocated to its full size when created, and mapped into memory once. Records are appended through the
+ * {@link FileChannel}, and read through the {@link MappedByteBuffer} view of the same file, which shares the page
+ * cache with the channel.
+ *
+ * <p>
+ * Offsets of records are kept in memory, addressed by the sequence relative to the base sequence. Appending is done by
+ * a single thread. Readers must only access sequences published to them by other means, such as a volatile watermark
+ * written after the append.
+ * </p>
+ */
+final class Segment implements AutoCloseable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Path path;
+    private final long baseSequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private volatile int[] offsets = new int[INITIAL_CAPACITY];
+    private int count;
+    private int position;
+
+    private Segment(Path path, long baseSequence, FileChannel channel) throws IOException {
+        this.path = path;
+        this.baseSequence = baseSequence;
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    /**
+     * Creates a new segment file of the given {@code size}, filled with zeros.
+     */
+    static Segment create(Path path, long baseSequence, int size) {
+        try {
+            var channel = FileChannel.open(path, CREATE_NEW, READ, WRITE);
+            channel.write(ByteBuffer.allocate(1), size - 1);
+            return new Segment(path, baseSequence, channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Opens an existing segment file and loads offsets of all valid records in it. Scanning stops at the end of
+     * written records, or at the first record that is torn.
+     */
+    static Segment open(Path path, long baseSequence) {
+        try {
+            var segment = new Segment(path, baseSequence, FileChannel.open(path, READ, WRITE));
+            int size;
+            while ((size = EventRecord.validSize(segment.buffer, segment.position)) > 0) {
+                segment.addOffset(segment.position);
+                segment.position += size;
+            }
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long baseSequence() {
+        return baseSequence;
+    }
+
+    /**
+     * @return the number of records in this segment
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return the size of this segment file
+     */
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    boolean fits(int recordSize) {
+        return position + recordSize <= capacity();
+    }
+
+    /**
+     * Writes the {@code record} at the end of this segment. The caller makes sure it {@link #fits(int) fits}.
+     */
+    void append(ByteBuffer record) {
+        int offset = position;
+        try {
+            int written = 0;
+            while (record.hasRemaining()) {
+                written += channel.write(record, offset + written);
+            }
+            position += written;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        addOffset(offset);
+    }
+
+    Set<Index> indices(long sequence) {
+        return EventRecord.indices(buffer, offset(sequence));
+    }
+
+    Event event(long sequence) {
+        return EventRecord.event(buffer, offset(sequence));
+    }
+
+    byte[] payload(long sequence) {
+        return EventRecord.payload(buffer, offset(sequence));
+    }
+
+    boolean endsTransaction(long sequence) {
+        return EventRecord.endsTransaction(buffer, offset(sequence));
+    }
+
+    /**
+     * Drops records from the {@code newCount}-th one on, zeroing the rest of the file so that dropped records are not
+     * mistaken for valid ones by later scans.
+     */
+    void truncate(int newCount) {
+        if (newCount >= count) {
+            return;
+        }
+        int newPosition = offsets[newCount];
+        try {
+            channel.truncate(newPosition);
+            channel.write(ByteBuffer.allocate(1), capacity() - 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        count = newCount;
+        position = newPosition;
+    }
+
+    /**
+     * Forces data written to this segment to the disk. The size of the file does not change after it is created, so
+     * its metadata does not need to be forced.
+     */
+    void force() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes this segment and deletes its file.
+     */
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int offset(long sequence) {
+        return offsets[(int) (sequence - baseSequence)];
+    }
+
+    private void addOffset(int offset) {
+        var current = offsets;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, count * 2);
+            current[count] = offset;
+            offsets = current;
+        } else {
+            current[count] = offset;
+        }
+        count++;
+    }
+}
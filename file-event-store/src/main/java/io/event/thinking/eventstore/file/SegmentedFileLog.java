@@ -0,0 +1,230 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.api.Index;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Append-only log of events split into {@link Segment segment files} of a fixed size. Each segment file is named after
+ * the sequence of its first event, so segments are ordered by their names. When an event does not fit into the last
+ * segment, a new segment is created starting at the head of the log.
+ *
+ * <p>
+ * Opening the log recovers it: segments are scanned in order, and everything after the last complete transaction is
+ * dropped. Records torn by a crash, and events of a transaction which was not written completely, are therefore never
+ * visible after a restart.
+ * </p>
+ * <p>
+ * Appending is done by a single thread. Readers must only access sequences below a head published to them by other
+ * means.
+ * </p>
+ */
+final class SegmentedFileLog implements AutoCloseable {
+
+    private static final String SUFFIX = ".segment";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("\\d{20}" + Pattern.quote(SUFFIX));
+
+    private final Path directory;
+    private final int segmentSize;
+    private volatile Segment[] segments;
+    /**
+     * The position of the first segment which may hold data not forced to the disk yet. Only accessed by the appender.
+     */
+    private int unforced;
+    /**
+     * Whether segment files were created since the directory was last forced. Only accessed by the appender.
+     */
+    private boolean directoryChanged;
+
+    private SegmentedFileLog(Path directory, int segmentSize, Segment[] segments) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.segments = segments;
+    }
+
+    /**
+     * Opens the log stored in the {@code directory}, creating the directory if it does not exist, and recovers it.
+     *
+     * @param directory   the directory holding segment files
+     * @param segmentSize the size of newly created segment files
+     * @return the opened log
+     */
+    static SegmentedFileLog open(Path directory, int segmentSize) {
+        var log = new SegmentedFileLog(directory, segmentSize, new Segment[0]);
+        log.segments = log.recover(loadSegments(directory));
+        return log;
+    }
+
+    private static List<Segment> loadSegments(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            try (var files = Files.list(directory)) {
+                return files.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches())
+                            .sorted()
+                            .map(path -> Segment.open(path, baseSequence(path)))
+                            .toList();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long baseSequence(Path path) {
+        var name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Finds the end of the last complete transaction among contiguous segments, truncates the log there and deletes
+     * segments after it.
+     */
+    private Segment[] recover(List<Segment> loaded) {
+        var recovered = new ArrayList<Segment>();
+        long committedHead = 0L;
+        long expectedBase = 0L;
+        for (Segment segment : loaded) {
+            if (segment.baseSequence() != expectedBase) {
+                break;
+            }
+            recovered.add(segment);
+            expectedBase = segment.baseSequence() + segment.count();
+            for (long sequence = segment.baseSequence(); sequence < expectedBase; sequence++) {
+                if (segment.endsTransaction(sequence)) {
+                    committedHead = sequence + 1;
+                }
+            }
+        }
+        loaded.stream()
+              .filter(segment -> !recovered.contains(segment))
+              .forEach(Segment::delete);
+        return truncated(recovered.toArray(new Segment[0]), committedHead);
+    }
+
+    /**
+     * @return the sequence of the next event to be appended
+     */
+    long head() {
+        var current = segments;
+        if (current.length == 0) {
+            return 0L;
+        }
+        var last = current[current.length - 1];
+        return last.baseSequence() + last.count();
+    }
+
+    /**
+     * Appends the encoded {@code record} at the head of the log, starting a new segment if it does not fit into the
+     * last one.
+     *
+     * @return the sequence of the appended event
+     */
+    long append(ByteBuffer record) {
+        if (record.remaining() > segmentSize) {
+            throw new IllegalArgumentException("Event of " + record.remaining()
+                                                       + " bytes does not fit into a segment of "
+                                                       + segmentSize + " bytes");
+        }
+        long sequence = head();
+        var current = segments;
+        if (current.length == 0 || !current[current.length - 1].fits(record.remaining())) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = Segment.create(directory.resolve(segmentName(sequence)),
+                                                         sequence,
+                                                         segmentSize);
+            segments = current;
+            directoryChanged = true;
+        }
+        current[current.length - 1].append(record);
+        return sequence;
+    }
+
+    /**
+     * Forces all events appended so far to the disk, including entries of segment files created in the meantime.
+     */
+    void force() {
+        var current = segments;
+        for (int i = Math.min(unforced, current.length); i < current.length; i++) {
+            current[i].force();
+        }
+        unforced = Math.max(current.length - 1, 0);
+        if (directoryChanged) {
+            try (var channel = FileChannel.open(directory, READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            directoryChanged = false;
+        }
+    }
+
+    Set<Index> indices(long sequence) {
+        return segment(sequence).indices(sequence);
+    }
+
+    Event event(long sequence) {
+        return segment(sequence).event(sequence);
+    }
+
+    byte[] payload(long sequence) {
+        return segment(sequence).payload(sequence);
+    }
+
+    /**
+     * Drops all events starting from the {@code newHead}. Used to roll back a transaction which could not be written
+     * completely.
+     */
+    void truncate(long newHead) {
+        segments = truncated(segments, newHead);
+    }
+
+    private static Segment[] truncated(Segment[] segments, long newHead) {
+        int kept = segments.length;
+        while (kept > 0 && segments[kept - 1].baseSequence() >= newHead) {
+            segments[--kept].delete();
+        }
+        if (kept > 0) {
+            var last = segments[kept - 1];
+            last.truncate((int) (newHead - last.baseSequence()));
+        }
+        return kept == segments.length ? segments : Arrays.copyOf(segments, kept);
+    }
+
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    private Segment segment(long sequence) {
+        var current = segments;
+        int low = 0;
+        int high = current.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (current[middle].baseSequence() <= sequence) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return current[low];
+    }
+
+    private static String segmentName(long baseSequence) {
+        return String.format("%020d%s", baseSequence, SUFFIX);
+    }
+}
@@ -0,0 +1,144 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Index;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory sequences of events per {@link Index}. Sequences are added by a single thread, while readers look them up
+ * concurrently.
+ */
+final class SequenceIndex {
+
+    private final Map<Index, Sequences> sequences = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes the event stored at the {@code sequence}. Sequences must be added in ascending order.
+     */
+    void add(long sequence, Set<Index> eventIndices) {
+        for (Index index : eventIndices) {
+            sequences.computeIfAbsent(index, i -> new Sequences()).add(sequence);
+        }
+    }
+
+    /**
+     * @return sequences of events indexed with the {@code index}, or {@code null} if no event is indexed with it
+     */
+    Postings postings(Index index) {
+        return sequences.get(index);
+    }
+
+    /**
+     * Passes each index, together with its sequences below the {@code toSequence}, to the {@code consumer}. Indices
+     * without such sequences are skipped. Safe to call while sequences are being added.
+     */
+    void forEach(long toSequence, BiConsumer<Index, long[]> consumer) {
+        sequences.forEach((index, list) -> {
+            int size = list.size;
+            var values = Arrays.copyOf(list.values, list.search(toSequence, size));
+            if (values.length > 0) {
+                consumer.accept(index, values);
+            }
+        });
+    }
+
+    /**
+     * Indexes all events of the {@code index} at given ascending {@code sequences} at once. Used to restore the index
+     * before any other sequences are added.
+     */
+    void load(Index index, long[] indexSequences) {
+        sequences.put(index, new Sequences(indexSequences));
+    }
+
+    /**
+     * Ascending sequences of events sharing an index, appended by a single thread. The size is published after the
+     * sequence is stored, so readers observing a size also observe all sequences below it.
+     */
+    private static final class Sequences implements Postings {
+
+        private volatile long[] values;
+        private volatile int size;
+
+        Sequences() {
+            this.values = new long[4];
+        }
+
+        Sequences(long[] values) {
+            this.values = values;
+            this.size = values.length;
+        }
+
+        void add(long sequence) {
+            var current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+                values = current;
+            }
+            current[size] = sequence;
+            size++;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public PrimitiveIterator.OfLong iterator(long fromSequence) {
+            int end = size;
+            var current = values;
+            return new PrimitiveIterator.OfLong() {
+                private int position = search(fromSequence, end);
+
+                @Override
+                public boolean hasNext() {
+                    return position < end;
+                }
+
+                @Override
+                public long nextLong() {
+                    if (position >= end) {
+                        throw new NoSuchElementException();
+                    }
+                    return current[position++];
+                }
+            };
+        }
+
+        @Override
+        public PrimitiveIterator.OfLong reverseIterator(long toSequence) {
+            int end = size;
+            var current = values;
+            return new PrimitiveIterator.OfLong() {
+                private int position = search(toSequence, end) - 1;
+
+                @Override
+                public boolean hasNext() {
+                    return position >= 0;
+                }
+
+                @Override
+                public long nextLong() {
+                    if (position < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    return current[position--];
+                }
+            };
+        }
+
+        /**
+         * @return the position of the first sequence greater than or equal to the {@code sequence}
+         */
+        int search(long sequence, int size) {
+            int position = Arrays.binarySearch(values, 0, size, sequence);
+            return position < 0 ? -position - 1 : position;
+        }
+    }
+}
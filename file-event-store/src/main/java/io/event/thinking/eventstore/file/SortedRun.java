@@ -0,0 +1,582 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Immutable file of an {@link LsmCriteriaIndex}, holding sequences of events between {@link #from()} inclusively and
+ * {@link #to()} exclusively, keyed by (index key, index value, sequence). The file is laid out as:
+ * <pre>
+ * data, per index in key order:
+ *   per block of up to 128 sequences: long first sequence, int offset of the block relative to the first block
+ *   blocks: varint of the first sequence, varint deltas of the following ones
+ * directory, per index in key order: short key length, key, short value length, value, int count, int data offset
+ * int  directory offset
+ * int  number of indices
+ * int  magic number
+ * </pre>
+ * Every {@value #SAMPLE_INTERVAL}th directory entry is sampled in memory when the run is opened, so looking up an index
+ * takes a binary search over samples and a scan over at most {@value #SAMPLE_INTERVAL} entries. Sequences of an index
+ * are scanned from a given sequence by a binary search over first sequences of its blocks. A {@link BloomFilter} over
+ * all indices of the run lets lookups skip the run without touching the file.
+ *
+ * <p>
+ * Runs are named after the range of sequences they cover, written to a temporary file first, forced to the disk, and
+ * atomically moved into place. The file is mapped into memory once and read without locks.
+ * </p>
+ */
+final class SortedRun {
+
+    /**
+     * The order of indices in a run.
+     */
+    static final Comparator<Index> ORDER = Comparator.comparing(Index::key).thenComparing(Index::value);
+
+    private static final String SUFFIX = ".run";
+    private static final Pattern NAME = Pattern.compile("(\\d{20})-(\\d{20})" + Pattern.quote(SUFFIX));
+    private static final int BLOCK_SIZE = 128;
+    private static final int BLOCK_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int SAMPLE_INTERVAL = 16;
+    private static final int FOOTER_SIZE = 3 * Integer.BYTES;
+    private static final int MAGIC = 0x52554E31;
+
+    private final Path path;
+    private final long from;
+    private final long to;
+    private final MappedByteBuffer buffer;
+    private final int directoryOffset;
+    private final int count;
+    private final Index[] samples;
+    private final int[] samplePositions;
+    private final BloomFilter filter;
+
+    private SortedRun(Path path, long from, long to) throws IOException {
+        this.path = path;
+        this.from = from;
+        this.to = to;
+        try (var channel = FileChannel.open(path, READ)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int footer = buffer.capacity() - FOOTER_SIZE;
+        if (footer < 0 || buffer.getInt(footer + 2 * Integer.BYTES) != MAGIC) {
+            throw new IOException("Invalid run file " + path);
+        }
+        this.directoryOffset = buffer.getInt(footer);
+        this.count = buffer.getInt(footer + Integer.BYTES);
+        int sampleCount = (count + SAMPLE_INTERVAL - 1) / SAMPLE_INTERVAL;
+        this.samples = new Index[sampleCount];
+        this.samplePositions = new int[sampleCount];
+        this.filter = new BloomFilter(count);
+        int position = directoryOffset;
+        for (int i = 0; i < count; i++) {
+            var index = index(position);
+            filter.add(index);
+            if (i % SAMPLE_INTERVAL == 0) {
+                samples[i / SAMPLE_INTERVAL] = index;
+                samplePositions[i / SAMPLE_INTERVAL] = position;
+            }
+            position = nextEntry(position);
+        }
+    }
+
+    /**
+     * @return the range of sequences covered by the run file at the {@code path} as {@code [from, to]}, or
+     * {@code null} if it is not a run file
+     */
+    static long[] range(Path path) {
+        var matcher = NAME.matcher(path.getFileName().toString());
+        if (!matcher.matches()) {
+            return null;
+        }
+        return new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))};
+    }
+
+    /**
+     * Opens the run file at the {@code path}.
+     */
+    static SortedRun open(Path path) {
+        var range = range(path);
+        try {
+            return new SortedRun(path, range[0], range[1]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a new run covering sequences between {@code from} inclusively and {@code to} exclusively into the
+     * {@code directory}.
+     *
+     * @param entries indices with their ascending sequences, in the {@link #ORDER order} of indices
+     * @return the opened run
+     */
+    static SortedRun write(Path directory, long from, long to, Iterator<Map.Entry<Index, long[]>> entries) {
+        var path = directory.resolve(String.format("%020d-%020d%s", from, to, SUFFIX));
+        var temporary = directory.resolve(path.getFileName() + ".tmp");
+        try {
+            var file = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+            try (var output = new DataOutputStream(file)) {
+                var entryDirectory = new ByteArrayOutputStream();
+                var directoryOutput = new DataOutputStream(entryDirectory);
+                int indexCount = 0;
+                while (entries.hasNext()) {
+                    var entry = entries.next();
+                    writeString(directoryOutput, entry.getKey().key());
+                    writeString(directoryOutput, entry.getKey().value());
+                    directoryOutput.writeInt(entry.getValue().length);
+                    directoryOutput.writeInt(file.position());
+                    writeSequences(output, entry.getValue());
+                    indexCount++;
+                }
+                int offset = file.position();
+                entryDirectory.writeTo(output);
+                output.writeInt(offset);
+                output.writeInt(indexCount);
+                output.writeInt(MAGIC);
+                // the whole run is mapped into a single buffer
+                file.position();
+            }
+            try (var channel = FileChannel.open(temporary, WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, path, ATOMIC_MOVE);
+            try (var channel = FileChannel.open(directory, READ)) {
+                channel.force(true);
+            }
+            return new SortedRun(path, from, to);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Merges adjacent {@code runs}, ordered by the sequences they cover, into a single new run. Sequences of an index
+     * are concatenated in the order of runs, since runs cover consecutive ranges of sequences.
+     */
+    static SortedRun merge(Path directory, List<SortedRun> runs) {
+        var iterators = new ArrayList<Iterator<Map.Entry<Index, long[]>>>();
+        for (SortedRun run : runs) {
+            iterators.add(run.entries());
+        }
+        var merged = new Iterator<Map.Entry<Index, long[]>>() {
+            private final Map.Entry<Index, long[]>[] heads = heads(iterators);
+
+            @Override
+            public boolean hasNext() {
+                return Arrays.stream(heads).anyMatch(head -> head != null);
+            }
+
+            @Override
+            public Map.Entry<Index, long[]> next() {
+                Index smallest = null;
+                for (var head : heads) {
+                    if (head != null && (smallest == null || ORDER.compare(head.getKey(), smallest) < 0)) {
+                        smallest = head.getKey();
+                    }
+                }
+                if (smallest == null) {
+                    throw new NoSuchElementException();
+                }
+                long[] sequences = new long[0];
+                for (int i = 0; i < heads.length; i++) {
+                    if (heads[i] != null && heads[i].getKey().equals(smallest)) {
+                        var part = heads[i].getValue();
+                        int length = sequences.length;
+                        sequences = Arrays.copyOf(sequences, length + part.length);
+                        System.arraycopy(part, 0, sequences, length, part.length);
+                        heads[i] = iterators.get(i).hasNext() ? iterators.get(i).next() : null;
+                    }
+                }
+                return new AbstractMap.SimpleImmutableEntry<>(smallest, sequences);
+            }
+        };
+        return write(directory, runs.getFirst().from(), runs.getLast().to(), merged);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map.Entry<Index, long[]>[] heads(List<Iterator<Map.Entry<Index, long[]>>> iterators) {
+        var heads = (Map.Entry<Index, long[]>[]) new Map.Entry<?, ?>[iterators.size()];
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = iterators.get(i).hasNext() ? iterators.get(i).next() : null;
+        }
+        return heads;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long from() {
+        return from;
+    }
+
+    long to() {
+        return to;
+    }
+
+    /**
+     * @return the size of the run file in bytes
+     */
+    long size() {
+        return buffer.capacity();
+    }
+
+    /**
+     * @return {@code false} if the run certainly holds no sequences of the {@code index}, {@code true} if it might
+     */
+    boolean mightContain(Index index) {
+        return filter.mightContain(index);
+    }
+
+    /**
+     * @return sequences of the {@code index} in this run, or {@code null} if there are none
+     */
+    Postings postings(Index index) {
+        int sample = Arrays.binarySearch(samples, index, ORDER);
+        if (sample < 0) {
+            sample = -sample - 2;
+            if (sample < 0) {
+                return null;
+            }
+        }
+        int position = samplePositions[sample];
+        int end = Math.min(count, (sample + 1) * SAMPLE_INTERVAL);
+        for (int i = sample * SAMPLE_INTERVAL; i < end; i++) {
+            int comparison = ORDER.compare(index(position), index);
+            if (comparison == 0) {
+                return postingsAt(position);
+            }
+            if (comparison > 0) {
+                return null;
+            }
+            position = nextEntry(position);
+        }
+        return null;
+    }
+
+    /**
+     * @return all indices of this run with their sequences, in the {@link #ORDER order} of indices
+     */
+    Iterator<Map.Entry<Index, long[]>> entries() {
+        return new Iterator<>() {
+            private int remaining = count;
+            private int position = directoryOffset;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public Map.Entry<Index, long[]> next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                var postings = postingsAt(position);
+                var sequences = new long[(int) postings.size()];
+                var iterator = postings.iterator(0L);
+                for (int i = 0; i < sequences.length; i++) {
+                    sequences[i] = iterator.nextLong();
+                }
+                var entry = new AbstractMap.SimpleImmutableEntry<>(index(position), sequences);
+                position = nextEntry(position);
+                remaining--;
+                return entry;
+            }
+        };
+    }
+
+    /**
+     * Deletes the run file. Readers holding postings of this run can still read them, since the file stays mapped.
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Index index(int position) {
+        var key = string(position);
+        position += Short.BYTES + Short.toUnsignedInt(buffer.getShort(position));
+        return Index.index(key, string(position));
+    }
+
+    private int nextEntry(int position) {
+        position += Short.BYTES + Short.toUnsignedInt(buffer.getShort(position));
+        position += Short.BYTES + Short.toUnsignedInt(buffer.getShort(position));
+        return position + 2 * Integer.BYTES;
+    }
+
+    private Postings postingsAt(int position) {
+        int end = nextEntry(position);
+        return new RunPostings(buffer.getInt(end - 2 * Integer.BYTES), buffer.getInt(end - Integer.BYTES));
+    }
+
+    private String string(int position) {
+        var bytes = new byte[Short.toUnsignedInt(buffer.getShort(position))];
+        buffer.get(position + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        var bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeSequences(DataOutputStream output, long[] sequences) throws IOException {
+        var blocks = new ByteArrayOutputStream();
+        var blockOutput = new DataOutputStream(blocks);
+        for (int start = 0; start < sequences.length; start += BLOCK_SIZE) {
+            output.writeLong(sequences[start]);
+            output.writeInt(blocks.size());
+            long previous = 0L;
+            for (int i = start; i < Math.min(start + BLOCK_SIZE, sequences.length); i++) {
+                writeVarLong(blockOutput, sequences[i] - previous);
+                previous = sequences[i];
+            }
+        }
+        blocks.writeTo(output);
+    }
+
+    private static void writeVarLong(DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    /**
+     * Sequences of a single index in this run.
+     */
+    private final class RunPostings implements Postings {
+
+        private final int count;
+        private final int offset;
+        private final int blockCount;
+
+        private RunPostings(int count, int offset) {
+            this.count = count;
+            this.offset = offset;
+            this.blockCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        }
+
+        @Override
+        public long size() {
+            return count;
+        }
+
+        @Override
+        public PrimitiveIterator.OfLong iterator(long fromSequence) {
+            int block = seekBlock(fromSequence);
+            var iterator = new PrimitiveIterator.OfLong() {
+                private int remaining = count - block * BLOCK_SIZE;
+                private int inBlock = 0;
+                private int position = blocksOffset() + buffer.getInt(offset + block * BLOCK_ENTRY_SIZE + Long.BYTES);
+                private long previous;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining > 0;
+                }
+
+                @Override
+                public long nextLong() {
+                    if (remaining == 0) {
+                        throw new NoSuchElementException();
+                    }
+                    if (inBlock == BLOCK_SIZE) {
+                        inBlock = 0;
+                        previous = 0L;
+                    }
+                    long value = 0L;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = buffer.get(position++);
+                        value |= (long) (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    previous += value;
+                    inBlock++;
+                    remaining--;
+                    return previous;
+                }
+            };
+            return new PrimitiveIterator.OfLong() {
+                private long next = advance();
+
+                private long advance() {
+                    while (iterator.hasNext()) {
+                        long sequence = iterator.nextLong();
+                        if (sequence >= fromSequence) {
+                            return sequence;
+                        }
+                    }
+                    return -1L;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public long nextLong() {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    long result = next;
+                    next = iterator.hasNext() ? iterator.nextLong() : -1L;
+                    return result;
+                }
+            };
+        }
+
+        /**
+         * Blocks can only be decoded forward, so each visited block is decoded as a whole and then walked backward.
+         */
+        @Override
+        public PrimitiveIterator.OfLong reverseIterator(long toSequence) {
+            return new PrimitiveIterator.OfLong() {
+                private final long[] sequences = new long[BLOCK_SIZE];
+                private int block = seekBlock(toSequence - 1);
+                private int position = decodeBefore(block, toSequence);
+
+                private int decodeBefore(int block, long toSequence) {
+                    int position = decode(block, sequences);
+                    while (position > 0 && sequences[position - 1] >= toSequence) {
+                        position--;
+                    }
+                    return position;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    while (position == 0 && block > 0) {
+                        position = decode(--block, sequences);
+                    }
+                    return position > 0;
+                }
+
+                @Override
+                public long nextLong() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return sequences[--position];
+                }
+            };
+        }
+
+        /**
+         * Decodes all sequences of the {@code block} into {@code sequences}.
+         *
+         * @return the number of sequences in the block
+         */
+        private int decode(int block, long[] sequences) {
+            int size = Math.min(BLOCK_SIZE, count - block * BLOCK_SIZE);
+            int position = blocksOffset() + buffer.getInt(offset + block * BLOCK_ENTRY_SIZE + Long.BYTES);
+            long previous = 0L;
+            for (int i = 0; i < size; i++) {
+                long value = 0L;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(position++);
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += value;
+                sequences[i] = previous;
+            }
+            return size;
+        }
+
+        /**
+         * @return the last block whose first sequence is not greater than the {@code sequence}, or the first block
+         */
+        private int seekBlock(long sequence) {
+            int low = 0;
+            int high = blockCount - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (buffer.getLong(offset + middle * BLOCK_ENTRY_SIZE) <= sequence) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+
+        private int blocksOffset() {
+            return offset + blockCount * BLOCK_ENTRY_SIZE;
+        }
+    }
+
+    /**
+     * Counts bytes written to a run file, so that offsets into the file, stored as {@code int}s and read from a single
+     * mapped buffer, are known to fit.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        /**
+         * @return the number of bytes written so far, as an offset into the run file
+         * @throws IllegalStateException if the run file has grown beyond 2 GiB
+         */
+        int position() {
+            if (count > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Run file exceeds 2 GiB");
+            }
+            return (int) count;
+        }
+    }
+}
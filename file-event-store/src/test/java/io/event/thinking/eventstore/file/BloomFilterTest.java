@@ -0,0 +1,37 @@
+package io.event.thinking.eventstore.file;
+
+import org.junit.jupiter.api.Test;
+
+import static io.event.thinking.eventstore.api.Index.index;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    @Test
+    void addedIndicesAreAlwaysContained() {
+        var filter = new BloomFilter(1_000);
+        for (int i = 0; i < 1_000; i++) {
+            filter.add(index("studentId", "student-" + i));
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(filter.mightContain(index("studentId", "student-" + i)));
+        }
+    }
+
+    @Test
+    void fewAbsentIndicesAreReportedAsContained() {
+        var filter = new BloomFilter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(index("studentId", "student-" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(index("courseId", "course-" + i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "Expected a false positive rate below 2%, but was " + falsePositives);
+    }
+}
@@ -0,0 +1,445 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.api.InvalidConsistencyConditionException;
+import io.event.thinking.eventstore.api.SequencedEvent;
+import io.event.thinking.eventstore.support.EventStoreContractTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static io.event.thinking.eventstore.api.ConsistencyCondition.consistencyCondition;
+import static io.event.thinking.eventstore.api.Criteria.anyOf;
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Index.index;
+import static io.event.thinking.eventstore.api.Event.event;
+import static io.event.thinking.eventstore.file.FileEventStoreConfiguration.defaultConfiguration;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileEventStoreTest extends EventStoreContractTest<FileEventStore> {
+
+    @TempDir
+    private Path directory;
+
+    @Override
+    protected FileEventStore createEventStore() {
+        return new FileEventStore(defaultConfiguration(directory));
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventStore.close();
+    }
+
+    @Test
+    void readIndicesAndPayloads() {
+        var index = index("key", "value");
+        eventStore.append(List.of(event(payload("event1"), index), event(payload("event2"))))
+                  .block();
+
+        var events = eventStore.read()
+                               .flux()
+                               .map(SequencedEvent::event)
+                               .collectList()
+                               .block();
+        assertEquals(2, events.size());
+        assertEquals(Set.of(index), events.get(0).indices());
+        assertArrayEquals(payload("event1"), events.get(0).payload());
+        assertEquals(Set.of(), events.get(1).indices());
+        assertArrayEquals(payload("event2"), events.get(1).payload());
+    }
+
+    @Test
+    void eventsSurviveRestart() {
+        var index = index("key", "value");
+        var event1 = event(payload("event1"), index);
+        var event2 = event(payload("event2"));
+        eventStore.append(List.of(event1, event2))
+                  .block();
+
+        reopen(defaultConfiguration(directory));
+
+        var source = eventStore.read();
+        assertEquals(2L, source.consistencyMarker());
+        StepVerifier.create(source.flux().map(EventStoreContractTest::stored))
+                    .expectNext(stored(0L, event1),
+                                stored(1L, event2))
+                    .verifyComplete();
+        StepVerifier.create(eventStore.read(anyOf(allOf(index))).flux().map(EventStoreContractTest::stored))
+                    .expectNext(stored(0L, event1))
+                    .verifyComplete();
+        StepVerifier.create(eventStore.append(event(emptyPayload(), index), consistencyCondition(0L, anyOf(allOf(index)))))
+                    .verifyError(InvalidConsistencyConditionException.class);
+    }
+
+    @Test
+    void eventsSpanMultipleSegments() {
+        var configuration = defaultConfiguration(directory).withSegmentSize(64);
+        reopen(configuration);
+        var index = index("key", "value");
+        for (int i = 0; i < 10; i++) {
+            eventStore.append(List.of(event(payload("event" + i), index), event(payload("other" + i))))
+                      .block();
+        }
+
+        reopen(configuration);
+
+        StepVerifier.create(eventStore.read(anyOf(allOf(index)))
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(0L, 2L, 4L, 6L, 8L, 10L, 12L, 14L, 16L, 18L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.read(19L).flux().map(EventStoreContractTest::stored))
+                    .expectNext(stored(19L, event(payload("other9"))))
+                    .verifyComplete();
+    }
+
+    @Test
+    void tornTransactionIsDroppedOnRecovery() throws IOException {
+        eventStore.append(event(emptyPayload()))
+                  .block();
+        eventStore.append(List.of(event(emptyPayload()), event(emptyPayload()), event(emptyPayload())))
+                  .block();
+        eventStore.close();
+        // each event without indices and payload takes 11 bytes, corrupt the last event of the transaction
+        try (var channel = FileChannel.open(directory.resolve("00000000000000000000.segment"), WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 3 * 11 + 8);
+        }
+
+        reopen(defaultConfiguration(directory));
+
+        assertEquals(1L, eventStore.read().consistencyMarker());
+        StepVerifier.create(eventStore.append(event(payload("event"))))
+                    .expectNext(1L)
+                    .verifyComplete();
+        reopen(defaultConfiguration(directory));
+        StepVerifier.create(eventStore.read(1L).flux().map(EventStoreContractTest::stored))
+                    .expectNext(stored(1L, event(payload("event"))))
+                    .verifyComplete();
+    }
+
+    @Test
+    void appendOfEventLargerThanSegmentFails() {
+        reopen(defaultConfiguration(directory).withSegmentSize(64));
+
+        StepVerifier.create(eventStore.append(List.of(event(emptyPayload()), event(new byte[64]))))
+                    .verifyError(IllegalArgumentException.class);
+        StepVerifier.create(eventStore.append(event(emptyPayload())))
+                    .expectNext(0L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void periodicFsyncCompletesConcurrentAppendsTogether() {
+        reopen(defaultConfiguration(directory).withFsyncPolicy(FsyncPolicy.every(Duration.ofMillis(50))));
+        var event = event(payload("event"));
+
+        var appends = Flux.merge(eventStore.append(event),
+                                 eventStore.append(event),
+                                 eventStore.append(event));
+        StepVerifier.create(appends)
+                    .expectNext(0L, 1L, 2L)
+                    .verifyComplete();
+        assertEquals(3L, eventStore.read().consistencyMarker());
+    }
+
+    @Test
+    void appendsLeftToOperatingSystemSurviveRestart() {
+        var configuration = defaultConfiguration(directory).withFsyncPolicy(FsyncPolicy.operatingSystem());
+        reopen(configuration);
+        var event = event(payload("event"));
+        StepVerifier.create(eventStore.append(List.of(event, event)))
+                    .expectNext(1L)
+                    .verifyComplete();
+
+        reopen(configuration);
+
+        assertEquals(2L, eventStore.read().consistencyMarker());
+    }
+
+    @Test
+    void closeCompletesAppendsWaitingForPeriodicFsync() throws Exception {
+        reopen(defaultConfiguration(directory).withFsyncPolicy(FsyncPolicy.every(Duration.ofHours(1))));
+        var event = event(payload("event"));
+        var appends = List.of(eventStore.append(event).toFuture(),
+                              eventStore.append(event).toFuture(),
+                              eventStore.append(event).toFuture());
+
+        eventStore.close();
+
+        for (int i = 0; i < appends.size(); i++) {
+            assertEquals(i, appends.get(i).get(1, TimeUnit.SECONDS));
+        }
+        reopen(defaultConfiguration(directory));
+        assertEquals(3L, eventStore.read().consistencyMarker());
+    }
+
+    @Test
+    void appendAfterCloseIsRejected() {
+        eventStore.close();
+
+        StepVerifier.create(eventStore.append(event(emptyPayload())))
+                    .verifyError(IllegalStateException.class);
+    }
+
+    @Test
+    void indexIsRestoredFromSnapshotAndReplayedTail() throws IOException {
+        var index = index("key", "value");
+        eventStore.append(List.of(event(payload("event1"), index), event(payload("event2"))))
+                  .block();
+        eventStore.close();
+        var snapshot = directory.resolve("index.snapshot");
+        var olderSnapshot = Files.copy(snapshot, directory.resolve("older.snapshot"));
+
+        eventStore = new FileEventStore(defaultConfiguration(directory));
+        eventStore.append(List.of(event(payload("event3"), index), event(payload("event4"))))
+                  .block();
+        eventStore.close();
+        Files.move(olderSnapshot, snapshot, REPLACE_EXISTING);
+
+        eventStore = new FileEventStore(defaultConfiguration(directory));
+        StepVerifier.create(eventStore.read(anyOf(allOf(index)))
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(0L, 2L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.append(event(emptyPayload(), index), consistencyCondition(1L, anyOf(allOf(index)))))
+                    .verifyError(InvalidConsistencyConditionException.class);
+    }
+
+    @Test
+    void snapshotIsTakenInTheBackground() throws InterruptedException {
+        reopen(defaultConfiguration(directory).withSnapshotThreshold(2));
+
+        eventStore.append(List.of(event(emptyPayload()), event(emptyPayload())))
+                  .block();
+
+        var snapshot = directory.resolve("index.snapshot");
+        for (int i = 0; i < 100 && !Files.exists(snapshot); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(Files.exists(snapshot));
+    }
+
+    @Test
+    void snapshotBeyondRecoveredLogIsDiscarded() throws IOException {
+        var index = index("key", "value");
+        eventStore.append(event(emptyPayload(), index))
+                  .block();
+        eventStore.append(List.of(event(emptyPayload()), event(emptyPayload()), event(emptyPayload(), index)))
+                  .block();
+        eventStore.close();
+        // the first event takes 23 bytes, the next two 11 bytes each, corrupt the last event of the transaction
+        try (var channel = FileChannel.open(directory.resolve("00000000000000000000.segment"), WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 23 + 2 * 11 + 8);
+        }
+
+        reopen(defaultConfiguration(directory));
+
+        assertFalse(Files.exists(directory.resolve("index.snapshot")));
+        StepVerifier.create(eventStore.read(anyOf(allOf(index)))
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(0L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void corruptedSnapshotIsIgnored() throws IOException {
+        var index = index("key", "value");
+        eventStore.append(List.of(event(emptyPayload(), index), event(emptyPayload(), index)))
+                  .block();
+        eventStore.close();
+        try (var channel = FileChannel.open(directory.resolve("index.snapshot"), WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 30);
+        }
+
+        reopen(defaultConfiguration(directory));
+
+        StepVerifier.create(eventStore.read(anyOf(allOf(index)))
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(0L, 1L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void onDiskIndexServesReadsAcrossRunsAndMemtables() throws InterruptedException {
+        reopen(defaultConfiguration(directory).withOnDiskIndex(true).withSnapshotThreshold(3));
+        var even = index("parity", "even");
+        var odd = index("parity", "odd");
+
+        for (int i = 0; i < 20; i++) {
+            eventStore.append(event(payload("event" + i), i % 2 == 0 ? even : odd))
+                      .block();
+        }
+        awaitRuns(6);
+
+        StepVerifier.create(eventStore.read(5L, anyOf(allOf(even)))
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(6L, 8L, 10L, 12L, 14L, 16L, 18L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.append(event(emptyPayload(), odd), consistencyCondition(19L, anyOf(allOf(odd)))))
+                    .verifyError(InvalidConsistencyConditionException.class);
+        StepVerifier.create(eventStore.append(event(emptyPayload(), odd), consistencyCondition(20L, anyOf(allOf(odd)))))
+                    .expectNext(20L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void onDiskIndexServesBackwardReadsAcrossRunsAndMemtables() throws InterruptedException {
+        reopen(defaultConfiguration(directory).withOnDiskIndex(true).withSnapshotThreshold(3));
+        var even = index("parity", "even");
+        var odd = index("parity", "odd");
+
+        for (int i = 0; i < 20; i++) {
+            eventStore.append(event(payload("event" + i), i % 2 == 0 ? even : odd))
+                      .block();
+        }
+        awaitRuns(6);
+
+        StepVerifier.create(eventStore.readBackward(anyOf(allOf(odd)), 3)
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(19L, 17L, 15L)
+                    .verifyComplete();
+        StepVerifier.create(eventStore.readBackward(13L, anyOf(allOf(even)), 100)
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(12L, 10L, 8L, 6L, 4L, 2L, 0L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void onDiskIndexMergesRuns() throws InterruptedException {
+        reopen(defaultConfiguration(directory).withOnDiskIndex(true).withSnapshotThreshold(1));
+        var index = index("key", "value");
+
+        for (int i = 0; i < 30; i++) {
+            eventStore.append(event(emptyPayload(), index))
+                      .block();
+        }
+        awaitRuns(1);
+        eventStore.close();
+
+        assertTrue(runs().size() <= 8);
+        eventStore = new FileEventStore(defaultConfiguration(directory).withOnDiskIndex(true).withSnapshotThreshold(1));
+        StepVerifier.create(eventStore.read(anyOf(allOf(index)))
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNextSequence(LongStream.range(0L, 30L).boxed().toList())
+                    .verifyComplete();
+    }
+
+    @Test
+    void onDiskIndexIsRestoredFromRunsAndReplayedTail() throws InterruptedException {
+        var configuration = defaultConfiguration(directory).withOnDiskIndex(true).withSnapshotThreshold(2);
+        reopen(configuration);
+        var index = index("key", "value");
+        eventStore.append(List.of(event(emptyPayload(), index), event(emptyPayload())))
+                  .block();
+        awaitRuns(1);
+        eventStore.append(event(emptyPayload(), index))
+                  .block();
+
+        reopen(configuration);
+
+        StepVerifier.create(eventStore.read(anyOf(allOf(index)))
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(0L, 2L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void runsBeyondRecoveredLogAreDiscarded() throws IOException, InterruptedException {
+        var configuration = defaultConfiguration(directory).withOnDiskIndex(true).withSnapshotThreshold(2);
+        reopen(configuration);
+        var index = index("key", "value");
+        eventStore.append(event(emptyPayload(), index))
+                  .block();
+        eventStore.append(List.of(event(emptyPayload(), index), event(emptyPayload())))
+                  .block();
+        awaitRuns(1);
+        eventStore.close();
+        // the first event takes 23 bytes, corrupt the last event of the second transaction
+        try (var channel = FileChannel.open(directory.resolve("00000000000000000000.segment"), WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 2 * 23 + 8);
+        }
+
+        eventStore = new FileEventStore(configuration);
+
+        assertTrue(runs().isEmpty());
+        StepVerifier.create(eventStore.read(anyOf(allOf(index)))
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNext(0L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void parallelScanPreservesOrder() {
+        reopen(defaultConfiguration(directory).withParallelScanChunkSize(16));
+        var even = index("parity", "even");
+        var events = new ArrayList<Event>();
+        for (int i = 0; i < 1_000; i++) {
+            events.add(event(payload("event" + i), i % 2 == 0 ? even : index("parity", "odd")));
+        }
+        eventStore.append(events)
+                  .block();
+
+        StepVerifier.create(eventStore.read(3L, anyOf(allOf(even)))
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNextSequence(LongStream.range(2L, 500L).map(i -> 2 * i).boxed().toList())
+                    .verifyComplete();
+        StepVerifier.create(eventStore.read(10L, null)
+                                      .flux()
+                                      .map(event -> new String(event.event().payload())))
+                    .expectNextSequence(IntStream.range(10, 1_000).mapToObj(i -> "event" + i).toList())
+                    .verifyComplete();
+    }
+
+    private void awaitRuns(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && runs().size() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(runs().size() >= count);
+    }
+
+    private List<Path> runs() {
+        try (var files = Files.list(directory.resolve("index"))) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".run"))
+                        .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void reopen(FileEventStoreConfiguration configuration) {
+        eventStore.close();
+        eventStore = new FileEventStore(configuration);
+    }
+}
@@ -0,0 +1,96 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Index;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Index.index;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LsmCriteriaIndexTest {
+
+    @TempDir
+    private Path directory;
+    private LsmCriteriaIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new LsmCriteriaIndex(directory, 10);
+        index.open(0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.close();
+    }
+
+    @Test
+    void runsWithoutIndicesOfCriterionAreSkipped() throws InterruptedException {
+        // each run of 10 events holds a course of its own
+        for (int sequence = 0; sequence < 80; sequence++) {
+            int course = sequence / 10;
+            index.add(sequence, Set.of(index("courseId", "course-" + course),
+                                       index("studentId", "student-" + sequence % 5)));
+            index.committed(sequence + 1L);
+        }
+        awaitRuns(8);
+
+        var candidates = index.candidates(allOf(index("courseId", "course-3"), index("studentId", "student-1")));
+
+        assertEquals(List.of(31L, 36L), sequences(candidates));
+        var statistics = index.statistics();
+        assertEquals(8L, statistics.lookups());
+        assertTrue(statistics.skipped() + statistics.falsePositives() == 7L, statistics.toString());
+        assertTrue(statistics.skippedShare() >= 0.75, statistics.toString());
+    }
+
+    @Test
+    void candidatesOfRarestIndexAreSelectedPerRun() throws InterruptedException {
+        for (int sequence = 0; sequence < 20; sequence++) {
+            var student = index("studentId", sequence < 10 ? "student-" + sequence % 2 : "student-0");
+            index.add(sequence, Set.of(index("courseId", "course-0"), student));
+            index.committed(sequence + 1L);
+        }
+        awaitRuns(2);
+
+        var candidates = index.candidates(allOf(index("courseId", "course-0"), index("studentId", "student-0")));
+
+        // student-0 is rarer in the first run, while both indices are used by all events of the second one
+        assertEquals(List.of(0L, 2L, 4L, 6L, 8L, 10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L),
+                     sequences(candidates));
+    }
+
+    @Test
+    void commitsAfterCloseAreIgnored() {
+        index.close();
+
+        for (int sequence = 0; sequence < 20; sequence++) {
+            index.add(sequence, Set.of(index("courseId", "course-0")));
+            index.committed(sequence + 1L);
+        }
+
+        assertEquals(0, index.runCount());
+    }
+
+    private void awaitRuns(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && index.runCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, index.runCount());
+    }
+
+    private static List<Long> sequences(Postings postings) {
+        var sequences = new ArrayList<Long>();
+        postings.iterator(0L).forEachRemaining((long sequence) -> sequences.add(sequence));
+        return sequences;
+    }
+}
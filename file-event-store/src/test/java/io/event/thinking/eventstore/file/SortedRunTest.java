@@ -0,0 +1,134 @@
+package io.event.thinking.eventstore.file;
+
+import io.event.thinking.eventstore.api.Index;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static io.event.thinking.eventstore.api.Index.index;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SortedRunTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void emptyRun() {
+        var run = SortedRun.write(directory, 0L, 10L, new TreeMap<Index, long[]>(SortedRun.ORDER).entrySet().iterator());
+
+        assertNull(run.postings(index("key", "value")));
+        assertFalse(run.entries().hasNext());
+    }
+
+    @Test
+    void lookupOfEachIndex() {
+        var entries = new TreeMap<Index, long[]>(SortedRun.ORDER);
+        for (int i = 0; i < 100; i++) {
+            entries.put(index("key" + i, "value"), new long[]{i, i + 100L});
+        }
+
+        var run = SortedRun.open(SortedRun.write(directory, 0L, 200L, entries.entrySet().iterator()).path());
+
+        for (int i = 0; i < 100; i++) {
+            var postings = run.postings(index("key" + i, "value"));
+            assertEquals(2L, postings.size());
+            assertArrayEquals(new long[]{i, i + 100L}, toArray(postings, 0L));
+        }
+        assertNull(run.postings(index("key", "value")));
+        assertNull(run.postings(index("key50", "other")));
+        assertNull(run.postings(index("zzz", "value")));
+    }
+
+    @Test
+    void seekMatchesSortedSet() {
+        var random = new Random(42);
+        var expected = new TreeSet<Long>();
+        long sequence = 0;
+        for (int i = 0; i < 10_000; i++) {
+            sequence += 1 + random.nextInt(i % 2 == 0 ? 10 : 100_000);
+            expected.add(sequence);
+        }
+        var entries = new TreeMap<Index, long[]>(SortedRun.ORDER);
+        var index = index("key", "value");
+        entries.put(index, expected.stream().mapToLong(Long::longValue).toArray());
+
+        var postings = SortedRun.write(directory, 0L, sequence + 1, entries.entrySet().iterator()).postings(index);
+
+        long target = -1;
+        while (target < sequence + 10) {
+            target += random.nextInt(50_000);
+            var iterator = postings.iterator(target);
+            Long ceiling = expected.ceiling(target);
+            assertEquals(ceiling != null, iterator.hasNext());
+            if (ceiling != null) {
+                assertEquals(ceiling, iterator.nextLong());
+            }
+        }
+    }
+
+    @Test
+    void reverseSeekMatchesSortedSet() {
+        var random = new Random(42);
+        var expected = new TreeSet<Long>();
+        long sequence = 0;
+        for (int i = 0; i < 10_000; i++) {
+            sequence += 1 + random.nextInt(i % 2 == 0 ? 10 : 100_000);
+            expected.add(sequence);
+        }
+        var entries = new TreeMap<Index, long[]>(SortedRun.ORDER);
+        var index = index("key", "value");
+        entries.put(index, expected.stream().mapToLong(Long::longValue).toArray());
+
+        var postings = SortedRun.write(directory, 0L, sequence + 1, entries.entrySet().iterator()).postings(index);
+
+        long target = sequence + 10;
+        while (target >= 0) {
+            var iterator = postings.reverseIterator(target);
+            var lower = expected.headSet(target, false).descendingIterator();
+            for (int i = 0; i < 3 && lower.hasNext(); i++) {
+                assertEquals(lower.next(), iterator.nextLong());
+            }
+            assertEquals(lower.hasNext(), iterator.hasNext());
+            target -= random.nextInt(50_000);
+        }
+    }
+
+    @Test
+    void mergeConcatenatesSequencesOfAdjacentRuns() {
+        var first = new TreeMap<Index, long[]>(SortedRun.ORDER);
+        first.put(index("a", "1"), new long[]{0L, 2L});
+        first.put(index("b", "1"), new long[]{1L});
+        var second = new TreeMap<Index, long[]>(SortedRun.ORDER);
+        second.put(index("a", "1"), new long[]{3L});
+        second.put(index("c", "1"), new long[]{4L});
+        var runs = List.of(SortedRun.write(directory, 0L, 3L, first.entrySet().iterator()),
+                           SortedRun.write(directory, 3L, 5L, second.entrySet().iterator()));
+
+        var merged = SortedRun.merge(directory, runs);
+
+        assertEquals(0L, merged.from());
+        assertEquals(5L, merged.to());
+        var indices = new ArrayList<Index>();
+        merged.entries().forEachRemaining(entry -> indices.add(entry.getKey()));
+        assertEquals(List.of(index("a", "1"), index("b", "1"), index("c", "1")), indices);
+        assertArrayEquals(new long[]{0L, 2L, 3L}, toArray(merged.postings(index("a", "1")), 0L));
+        assertArrayEquals(new long[]{2L, 3L}, toArray(merged.postings(index("a", "1")), 1L));
+        assertArrayEquals(new long[]{4L}, toArray(merged.postings(index("c", "1")), 0L));
+    }
+
+    private static long[] toArray(Postings postings, long fromSequence) {
+        var sequences = new ArrayList<Long>();
+        postings.iterator(fromSequence).forEachRemaining((long sequence) -> sequences.add(sequence));
+        return sequences.stream().mapToLong(Long::longValue).toArray();
+    }
+}
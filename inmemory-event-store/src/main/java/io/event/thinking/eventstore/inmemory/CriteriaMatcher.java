@@ -0,0 +1,141 @@
+package io.event.thinking.eventstore.inmemory;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Criterion;
+import io.event.thinking.eventstore.api.Index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * {@link Criteria} compiled against the {@link IndexDictionary}, matching sorted ids of event indices without any
+ * allocation.
+ *
+ * <p>
+ * Each criterion is keyed by its rarest index, and criterions sharing the same rarest index are grouped together. An
+ * event is rejected right away unless one of its ids is a rarest index of some group, which is checked in a bitset.
+ * Only then the remaining ids of the group's criterions are checked against the ids of the event.
+ * </p>
+ * <p>
+ * Criterions containing indices which have never been interned cannot match any stored event, so they are left out.
+ * </p>
+ */
+class CriteriaMatcher {
+
+    private final int[] rarest;
+    private final int[][][] remaining;
+    private final long[] rarestBits;
+
+    private CriteriaMatcher(int[] rarest, int[][][] remaining) {
+        this.rarest = rarest;
+        this.remaining = remaining;
+        int bound = rarest.length == 0 ? 0 : rarest[rarest.length - 1] + 1;
+        this.rarestBits = new long[(bound + 63) >>> 6];
+        for (int id : rarest) {
+            rarestBits[id >>> 6] |= 1L << id;
+        }
+    }
+
+    /**
+     * Compiles the given {@code criteria}. The criteria must not match all events.
+     *
+     * @param criteria   the criteria to compile
+     * @param dictionary the dictionary used to resolve ids of indices
+     * @param frequency  the number of events carrying the index with given id, used to find the rarest index
+     * @return the compiled matcher
+     */
+    static CriteriaMatcher compile(Criteria criteria, IndexDictionary dictionary, IntUnaryOperator frequency) {
+        Map<Integer, List<int[]>> groups = new TreeMap<>();
+        for (Criterion criterion : criteria.criteria()) {
+            var ids = ids(criterion, dictionary);
+            if (ids == null) {
+                continue;
+            }
+            int rarest = ids[0];
+            for (int id : ids) {
+                if (frequency.applyAsInt(id) < frequency.applyAsInt(rarest)) {
+                    rarest = id;
+                }
+            }
+            int key = rarest;
+            groups.computeIfAbsent(key, k -> new ArrayList<>())
+                  .add(Arrays.stream(ids).filter(id -> id != key).toArray());
+        }
+        return new CriteriaMatcher(groups.keySet().stream().mapToInt(Integer::intValue).toArray(),
+                                   groups.values().stream().map(rests -> rests.toArray(int[][]::new))
+                                         .toArray(int[][][]::new));
+    }
+
+    private static int[] ids(Criterion criterion, IndexDictionary dictionary) {
+        var ids = new int[criterion.indices().size()];
+        int i = 0;
+        for (Index index : criterion.indices()) {
+            int id = dictionary.id(index);
+            if (id == IndexDictionary.UNKNOWN) {
+                return null;
+            }
+            ids[i++] = id;
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * @return sorted ids of the rarest indices of all criterions. Every matching event carries at least one of them.
+     */
+    int[] rarest() {
+        return rarest;
+    }
+
+    /**
+     * @param rarestId the id of one of the {@link #rarest()} indices
+     * @return {@code true} if every event carrying the given index matches, {@code false} otherwise
+     */
+    boolean matchesAllCarrying(int rarestId) {
+        for (int[] rest : remaining[Arrays.binarySearch(rarest, rarestId)]) {
+            if (rest.length == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches sorted ids of event indices.
+     *
+     * @param ids sorted ids of event indices
+     * @return {@code true} if the event matches, {@code false} otherwise
+     */
+    boolean matches(int[] ids) {
+        for (int id : ids) {
+            if ((id >>> 6) < rarestBits.length && (rarestBits[id >>> 6] & (1L << id)) != 0) {
+                for (int[] rest : remaining[Arrays.binarySearch(rarest, id)]) {
+                    if (containsAll(ids, rest)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether sorted {@code ids} contain all sorted {@code required} ids by merging both arrays.
+     */
+    private static boolean containsAll(int[] ids, int[] required) {
+        int i = 0;
+        for (int id : required) {
+            while (i < ids.length && ids[i] < id) {
+                i++;
+            }
+            if (i == ids.length || ids[i] != id) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
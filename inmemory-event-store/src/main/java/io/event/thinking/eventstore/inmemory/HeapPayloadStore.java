@@ -0,0 +1,19 @@
+package io.event.thinking.eventstore.inmemory;
+
+/**
+ * Keeps payloads on the heap, exactly as they were appended.
+ */
+class HeapPayloadStore implements PayloadStore {
+
+    private final SegmentedLog<byte[]> payloads = new SegmentedLog<>();
+
+    @Override
+    public void append(long sequence, byte[] payload) {
+        payloads.append(sequence, payload);
+    }
+
+    @Override
+    public byte[] get(long sequence) {
+        return payloads.get(sequence);
+    }
+}
@@ -3,72 +3,408 @@ package io.event.thinking.eventstore.inmemory;
 import io.event.thinking.eventstore.api.ConsistencyCondition;
 import io.event.thinking.eventstore.api.Criteria;
 import io.event.thinking.eventstore.api.EventStore;
+import io.event.thinking.eventstore.api.IndexedEvent;
 import io.event.thinking.eventstore.api.InvalidConsistencyConditionException;
 import io.event.thinking.eventstore.api.SequencedEvent;
+import io.event.thinking.eventstore.api.MarkedEventBatches;
 import io.event.thinking.eventstore.api.MarkedEvents;
+import io.event.thinking.eventstore.api.MarkedIndexedEvents;
 import io.event.thinking.eventstore.api.Event;
-import io.event.thinking.eventstore.api.Index;
+import io.event.thinking.eventstore.support.LiveStream;
+import io.event.thinking.eventstore.support.ParallelScan;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.SortedMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static io.event.thinking.eventstore.inmemory.InvertedIndex.matchesAll;
 
 /**
- * In-memory implementation of the {@link EventStore}. The implementation is trivial, used to express concepts and for
- * educational purposes. The price that is paid is the poor performance.
+ * In-memory implementation of the {@link EventStore}. The implementation is kept simple, used to express concepts and
+ * for educational purposes.
  *
  * <p>
  * The implementation uses {@link Schedulers#single()} (which basically uses a single thread) to sequentialize all
- * appends. This choice makes the implementation easy, and lock-free.
+ * appends. This choice makes the implementation easy, and lock-free. Append requests are queued and the appender drains
+ * them in batches (group commit): each request of the batch is validated against the store, including the requests
+ * accepted earlier in the same batch, and the whole batch is committed before any of the requests gets completed. See
+ * {@link InMemoryEventStoreConfiguration} for batch size and linger settings.
+ * </p>
+ * <p>
+ * Indices of events are interned in an {@link IndexDictionary}, and each event keeps only the sorted ids of its indices
+ * in a {@link SegmentedLog}, addressed directly by the sequence of the event. Payloads are stored in a
+ * {@link PayloadStore}, either {@link HeapPayloadStore on the heap} or
+ * {@link InMemoryEventStoreConfiguration#offHeapPayloads() off the heap}. Next to them, an {@link InvertedIndex} keeps
+ * posting lists of sequences per index, so that reads and consistency checks only visit matching events instead of
+ * scanning the whole log. Posting lists are visited from their end when {@link #readBackward(long, Criteria, int)
+ * reading backward}, so reading the latest matching events does not depend on the number of older ones. Reads
+ * spanning many events can be {@link InMemoryEventStoreConfiguration#parallelScanChunkSize() scanned in parallel}, in
+ * chunks of sequences merged back in order.
+ * </p>
+ * <p>
+ * The appender owns the head of the Event Store and publishes a separate committed watermark once a whole batch is
+ * stored and indexed. A read captures the watermark once, with a single volatile read, as its consistency marker, and
+ * never goes past it, however late it is subscribed to. Hence reads never observe a partially appended transaction.
+ * Events below the watermark are never modified, so reads are isolated from concurrent appends without locking.
  * </p>
  * <p>
- * Data structure for storing all events is a concurrent implementation of the {@link SortedMap}. There are no
- * additional structures (indices) to improve the append/query performance of the Event Store.
+ * {@link #stream(long, Criteria) Live streams} read events from the log up to the committed watermark, and then wait
+ * for the appender to notify them about new events, so subscribers are neither polling nor buffered. After each
+ * commit, the appender routes every committed event through a {@link SubscriptionRegistry}, waking only the streams
+ * whose criteria the event could match.
  * </p>
  */
 public class InMemoryEventStore implements EventStore {
 
-    private final SortedMap<Long, Event> events = new ConcurrentSkipListMap<>();
+    private final SegmentedLog<int[]> indices = new SegmentedLog<>();
+    private final IndexDictionary dictionary = new IndexDictionary();
+    private final InvertedIndex index = new InvertedIndex(dictionary, indices);
+    private final PayloadStore payloads;
     private final Scheduler appender = Schedulers.single();
+    private final Queue<AppendRequest> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final SubscriptionRegistry subscriptions = new SubscriptionRegistry(dictionary, index::frequency);
+    private final LiveStream.Source streamSource = new StreamSource();
+    private final InMemoryEventStoreConfiguration configuration;
+    /**
+     * The position of the next event to be appended. Only accessed by the appender.
+     */
+    private long head;
+    /**
+     * The position up to which (exclusively) appended events are visible to readers. Moved by the appender once a
+     * whole batch is stored and indexed.
+     */
+    private volatile long committed;
+
+    /**
+     * Instantiates this Event Store with the {@link InMemoryEventStoreConfiguration#defaultConfiguration() default
+     * configuration}.
+     */
+    public InMemoryEventStore() {
+        this(InMemoryEventStoreConfiguration.defaultConfiguration());
+    }
+
+    /**
+     * Instantiates this Event Store with the given {@code configuration}.
+     *
+     * @param configuration the configuration
+     */
+    public InMemoryEventStore(InMemoryEventStoreConfiguration configuration) {
+        this.configuration = configuration;
+        this.payloads = configuration.offHeapPayloads() ? new OffHeapPayloadStore() : new HeapPayloadStore();
+    }
 
     @Override
     public Mono<Long> append(List<Event> events, ConsistencyCondition consistencyCondition) {
-        return Mono.fromSupplier(() -> doAppend(events, consistencyCondition))
-                   .subscribeOn(appender);
+        return Mono.create(sink -> submit(new AppendRequest(events, consistencyCondition, sink)));
+    }
+
+    /**
+     * Queues the {@code request} and makes sure the appender is going to drain it. The first request to arrive at an
+     * idle appender schedules the drain after the configured linger. If enough requests queue up to fill a batch, the
+     * drain is scheduled right away.
+     */
+    private void submit(AppendRequest request) {
+        pending.offer(request);
+        boolean batchFull = pendingCount.incrementAndGet() >= configuration.maxBatchSize();
+        if (drainScheduled.compareAndSet(false, true)) {
+            if (batchFull || configuration.maxLinger().isZero()) {
+                appender.schedule(this::drain);
+            } else {
+                appender.schedule(this::drain, configuration.maxLinger().toNanos(), TimeUnit.NANOSECONDS);
+            }
+        } else if (batchFull) {
+            appender.schedule(this::drain);
+        }
+    }
+
+    /**
+     * Drains all pending requests in batches of at most {@link InMemoryEventStoreConfiguration#maxBatchSize()}. The
+     * flag is reset before polling, so a request queued concurrently either gets polled here or schedules a new drain.
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        List<AppendRequest> batch;
+        while (!(batch = nextBatch()).isEmpty()) {
+            commit(batch);
+        }
+    }
+
+    private List<AppendRequest> nextBatch() {
+        var batch = new ArrayList<AppendRequest>();
+        AppendRequest request;
+        while (batch.size() < configuration.maxBatchSize() && (request = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(request);
+        }
+        return batch;
+    }
+
+    /**
+     * Appends accepted requests of the {@code batch} one after the other, so that each request is validated against
+     * earlier accepted members of the batch as well. Requests are completed only after the whole batch is processed,
+     * and every one of them is completed, whatever is thrown while processing it.
+     */
+    private void commit(List<AppendRequest> batch) {
+        var results = new Object[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            var request = batch.get(i);
+            try {
+                results[i] = doAppend(request.events(), request.consistencyCondition());
+            } catch (Throwable e) {
+                results[i] = e;
+            }
+        }
+        long previous = committed;
+        committed = head;
+        try {
+            dispatch(previous);
+        } finally {
+            for (int i = 0; i < batch.size(); i++) {
+                if (results[i] instanceof Throwable e) {
+                    batch.get(i).sink().error(e);
+                } else {
+                    batch.get(i).sink().success((Long) results[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Wakes live streams waiting for events committed after the {@code previous} watermark, routing each event only to
+     * streams whose criteria it could match.
+     */
+    private void dispatch(long previous) {
+        if (previous == head || subscriptions.isEmpty()) {
+            return;
+        }
+        for (long sequence = previous; sequence < head; sequence++) {
+            subscriptions.dispatch(indices.get(sequence));
+        }
+        subscriptions.dispatchCommit();
     }
 
     @Override
     public MarkedEvents read(long fromSequence, Criteria criteria) {
+        long consistencyMarker = committed;
+        Supplier<Flux<SequencedEvent>> sourced = () -> scan(fromSequence, consistencyMarker, criteria);
+        return new MarkedEvents(consistencyMarker, Flux.defer(sourced));
+    }
+
+    /**
+     * Scans events matching the {@code criteria} between {@code fromSequence} inclusively and {@code toSequence}
+     * exclusively. Ranges longer than the configured {@link InMemoryEventStoreConfiguration#parallelScanChunkSize() chunk size}
+     * are scanned as a {@link ParallelScan}.
+     */
+    private Flux<SequencedEvent> scan(long fromSequence, long toSequence, Criteria criteria) {
+        long from = Math.max(fromSequence, 0L);
+        int chunkSize = configuration.parallelScanChunkSize();
+        if (chunkSize == 0 || toSequence - from <= chunkSize) {
+            return Flux.fromStream(matching(from, toSequence, criteria));
+        }
+        return ParallelScan.scan(from,
+                                 toSequence,
+                                 chunkSize,
+                                 (chunkFrom, chunkTo) -> matching(chunkFrom, chunkTo, criteria),
+                                 Schedulers.parallel());
+    }
+
+    /**
+     * Collects committed events into batches straight from the log, so that each batch costs a single signal.
+     */
+    @Override
+    public MarkedEventBatches readBatches(long fromSequence, Criteria criteria, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        long consistencyMarker = committed;
+        Supplier<Flux<List<SequencedEvent>>> sourced =
+                () -> Flux.fromIterable(() -> batches(matching(fromSequence, consistencyMarker, criteria), batchSize));
+        return new MarkedEventBatches(consistencyMarker, Flux.defer(sourced));
+    }
+
+    private static Iterator<List<SequencedEvent>> batches(Stream<SequencedEvent> events, int batchSize) {
+        var iterator = events.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public List<SequencedEvent> next() {
+                if (!iterator.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var batch = new ArrayList<SequencedEvent>(Math.min(batchSize, 1024));
+                while (batch.size() < batchSize && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                }
+                return batch;
+            }
+        };
+    }
+
+    /**
+     * Streams committed events matching the {@code criteria} between {@code fromSequence} inclusively and
+     * {@code toSequence} exclusively.
+     */
+    private Stream<SequencedEvent> matching(long fromSequence, long toSequence, Criteria criteria) {
+        return matchingSequences(fromSequence, toSequence, criteria).mapToObj(this::sequencedEvent);
+    }
+
+    private LongStream matchingSequences(long fromSequence, long toSequence, Criteria criteria) {
+        if (matchesAll(criteria)) {
+            return LongStream.range(Math.max(fromSequence, 0L), toSequence);
+        }
+        return index.sequences(fromSequence, criteria)
+                    .takeWhile(sequence -> sequence < toSequence);
+    }
+
+    /**
+     * Reads only sorted ids of indices of matching events from the log. Payloads stay in the {@link PayloadStore} until
+     * asked for, which saves copying them out of {@link InMemoryEventStoreConfiguration#offHeapPayloads() off-heap}
+     * memory.
+     */
+    @Override
+    public MarkedIndexedEvents readIndexed(long fromSequence, Criteria criteria) {
+        long consistencyMarker = committed;
+        Supplier<Flux<IndexedEvent>> sourced =
+                () -> Flux.fromStream(matchingSequences(fromSequence, consistencyMarker, criteria)
+                                              .mapToObj(this::indexedEvent));
+        return new MarkedIndexedEvents(consistencyMarker, Flux.defer(sourced));
+    }
+
+    /**
+     * Answered by the {@link InvertedIndex} without touching payloads, and without touching events at all if every
+     * matching event carries a single index.
+     */
+    @Override
+    public Mono<Long> count(long fromSequence, Criteria criteria) {
+        return Mono.fromSupplier(() -> {
+            long toSequence = committed;
+            if (matchesAll(criteria)) {
+                return Math.max(toSequence - Math.max(fromSequence, 0L), 0L);
+            }
+            return index.count(fromSequence, toSequence, criteria);
+        });
+    }
+
+    /**
+     * Answered the same way consistency conditions are validated.
+     */
+    @Override
+    public Mono<Boolean> exists(long fromSequence, Criteria criteria) {
+        return Mono.fromSupplier(() -> matchesAny(fromSequence, committed, criteria));
+    }
+
+    /**
+     * Visits posting lists of the {@link InvertedIndex} from their end, so only the latest matching events are read,
+     * and at most {@code limit} of them.
+     */
+    @Override
+    public MarkedEvents readBackward(long fromSequence, Criteria criteria, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        long consistencyMarker = committed;
         Supplier<Flux<SequencedEvent>> sourced =
-                () -> Flux.fromStream(events.tailMap(fromSequence)
-                                            .entrySet()
-                                            .stream()
-                                            .filter(entry -> matches(criteria, entry.getValue().indices()))
-                                            .map(SequencedEvent::sequencedEvent));
-        return new MarkedEvents(head(), Flux.defer(sourced));
+                () -> Flux.fromStream(matchingBackward(fromSequence, consistencyMarker, criteria).limit(limit));
+        return new MarkedEvents(consistencyMarker, Flux.defer(sourced));
+    }
+
+    /**
+     * Streams committed events matching the {@code criteria} in descending order, from {@code fromSequence} inclusively
+     * down to the first event, but not from {@code toSequence} or beyond.
+     */
+    private Stream<SequencedEvent> matchingBackward(long fromSequence, long toSequence, Criteria criteria) {
+        long upper = Math.min(fromSequence, toSequence - 1);
+        if (matchesAll(criteria)) {
+            return LongStream.iterate(upper, sequence -> sequence >= 0, sequence -> sequence - 1)
+                             .mapToObj(this::sequencedEvent);
+        }
+        return index.reverseSequences(upper, criteria)
+                    .mapToObj(this::sequencedEvent);
+    }
+
+    /**
+     * Streams events matching the {@code criteria} from the {@code fromSequence} on, reading them from the log as a
+     * {@link LiveStream} on one of {@link Schedulers#parallel() parallel} workers. The appender wakes streams waiting
+     * for new events after each commit.
+     */
+    @Override
+    public Flux<SequencedEvent> stream(long fromSequence, Criteria criteria) {
+        return Flux.create(sink -> LiveStream.start(streamSource, fromSequence, criteria, sink,
+                                                    Schedulers.parallel()));
     }
 
-    private boolean matches(Criteria criteria, Set<Index> indices) {
-        return criteria == null || criteria.matches(indices);
+    private IndexedEvent indexedEvent(long sequence) {
+        return IndexedEvent.indexedEvent(sequence,
+                                         dictionary.indices(indices.get(sequence)),
+                                         () -> payloads.get(sequence));
+    }
+
+    private SequencedEvent sequencedEvent(long sequence) {
+        return SequencedEvent.sequencedEvent(sequence, Event.event(dictionary.indices(indices.get(sequence)),
+                                                                payloads.get(sequence)));
     }
 
     /**
      * Does the actual append to the in-memory data structure. No need for any synchronization mechanism since appending
-     * is done in a single thread.
+     * is done in a single thread. Stored events are not visible to readers until the batch they belong to is
+     * committed.
+     * <p>
+     * The transaction is appended as a whole or not at all. All its events are checked and their indices interned
+     * before anything is stored, and the head is moved past the transaction only once all of it is stored. Whatever a
+     * failed transaction left past the head is overwritten by the next one.
+     * </p>
      */
     private long doAppend(List<Event> events, ConsistencyCondition consistencyCondition) {
         if (consistencyCondition != null && !validate(consistencyCondition)) {
             throw new InvalidConsistencyConditionException();
         }
 
-        events.forEach(e -> this.events.put(head(), e));
-        return head() - 1;
+        var ids = new int[events.size()][];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = stage(events.get(i));
+        }
+        for (int i = 0; i < ids.length; i++) {
+            indices.append(head + i, ids[i]);
+            payloads.append(head + i, events.get(i).payload());
+        }
+        for (int i = 0; i < ids.length; i++) {
+            index.add(head + i, ids[i]);
+        }
+        head += ids.length;
+        return head - 1;
+    }
+
+    /**
+     * Checks the {@code event} can be stored, and interns its indices.
+     *
+     * @return sorted ids of indices of the event
+     */
+    private int[] stage(Event event) {
+        if (event == null || event.indices() == null || event.payload() == null) {
+            throw new IllegalArgumentException("An event must have indices and a payload");
+        }
+        return dictionary.intern(event.indices());
     }
 
     /**
@@ -76,16 +412,41 @@ public class InMemoryEventStore implements EventStore {
      * the append request is valid.
      */
     private boolean validate(ConsistencyCondition consistencyCondition) {
-        return events.tailMap(consistencyCondition.consistencyMarker())
-                     .values()
-                     .stream()
-                     .noneMatch(t -> consistencyCondition.matches(t.indices()));
+        return !matchesAny(consistencyCondition.consistencyMarker(), head, consistencyCondition.criteria());
     }
 
     /**
-     * @return the current head of the Event Store, which is the position of the first event to be appended
+     * Checks whether any event between {@code fromSequence} inclusively and {@code toSequence} exclusively matches the
+     * {@code criteria}. The check is answered by the {@link InvertedIndex} without touching payloads.
      */
-    private long head() {
-        return events.size();
+    private boolean matchesAny(long fromSequence, long toSequence, Criteria criteria) {
+        if (matchesAll(criteria)) {
+            return Math.max(fromSequence, 0L) < toSequence;
+        }
+        return index.matchesAny(fromSequence, toSequence, criteria);
+    }
+
+    private final class StreamSource implements LiveStream.Source {
+
+        @Override
+        public long committed() {
+            return committed;
+        }
+
+        @Override
+        public Stream<SequencedEvent> matching(long fromSequence, long toSequence, Criteria criteria) {
+            return InMemoryEventStore.this.matching(fromSequence, toSequence, criteria);
+        }
+
+        @Override
+        public Disposable subscribe(Criteria criteria, Runnable listener) {
+            return subscriptions.register(criteria, listener);
+        }
+    }
+
+    private record AppendRequest(List<Event> events,
+                                 ConsistencyCondition consistencyCondition,
+                                 MonoSink<Long> sink) {
+
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,91 @@
+package io.event.thinking.eventstore.inmemory;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the {@link InMemoryEventStore}.
+ *
+ * @param maxBatchSize          the maximum number of append requests validated and committed together in a single batch
+ * @param maxLinger             the maximum time the first pending append request waits for other requests to join its
+ *                              batch. {@link Duration#ZERO} means that the batch is committed as soon as the appender
+ *                              picks it up.
+ * @param offHeapPayloads       whether payloads are copied into off-heap memory, so that the heap does not grow with
+ *                              the total payload volume. Payloads are copied back to the heap when read. Off-heap
+ *                              memory is limited by {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap
+ *                              size, and appends fail with an {@link OutOfMemoryError} once it is used up.
+ * @param parallelScanChunkSize the number of sequences in a range matched by a single task when a read is scanned in
+ *                              parallel. Reads spanning more sequences than this are split into such ranges, matched on
+ *                              {@link reactor.core.scheduler.Schedulers#parallel() parallel} workers. {@code 0}
+ *                              disables parallel scans.
+ */
+public record InMemoryEventStoreConfiguration(int maxBatchSize,
+                                              Duration maxLinger,
+                                              boolean offHeapPayloads,
+                                              int parallelScanChunkSize) {
+
+    /**
+     * Validates the configuration.
+     */
+    public InMemoryEventStoreConfiguration {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        if (maxLinger == null || maxLinger.isNegative()) {
+            throw new IllegalArgumentException("maxLinger must not be negative");
+        }
+        if (parallelScanChunkSize < 0) {
+            throw new IllegalArgumentException("parallelScanChunkSize must not be negative");
+        }
+    }
+
+    /**
+     * Factory method for the default {@link InMemoryEventStoreConfiguration}: batches of up to 256 append requests
+     * which do not wait for each other, with payloads kept on the heap, and reads scanned sequentially.
+     *
+     * @return the default configuration
+     */
+    public static InMemoryEventStoreConfiguration defaultConfiguration() {
+        return new InMemoryEventStoreConfiguration(256, Duration.ZERO, false, 0);
+    }
+
+    /**
+     * Creates a copy of this configuration with given {@code maxBatchSize}.
+     *
+     * @param maxBatchSize the maximum number of append requests committed together
+     * @return the new configuration
+     */
+    public InMemoryEventStoreConfiguration withMaxBatchSize(int maxBatchSize) {
+        return new InMemoryEventStoreConfiguration(maxBatchSize, maxLinger, offHeapPayloads, parallelScanChunkSize);
+    }
+
+    /**
+     * Creates a copy of this configuration with given {@code maxLinger}.
+     *
+     * @param maxLinger the maximum time the first pending append request waits for other requests
+     * @return the new configuration
+     */
+    public InMemoryEventStoreConfiguration withMaxLinger(Duration maxLinger) {
+        return new InMemoryEventStoreConfiguration(maxBatchSize, maxLinger, offHeapPayloads, parallelScanChunkSize);
+    }
+
+    /**
+     * Creates a copy of this configuration with given {@code offHeapPayloads}.
+     *
+     * @param offHeapPayloads whether payloads are copied into off-heap memory
+     * @return the new configuration
+     */
+    public InMemoryEventStoreConfiguration withOffHeapPayloads(boolean offHeapPayloads) {
+        return new InMemoryEventStoreConfiguration(maxBatchSize, maxLinger, offHeapPayloads, parallelScanChunkSize);
+    }
+
+    /**
+     * Creates a copy of this configuration with given {@code parallelScanChunkSize}.
+     *
+     * @param parallelScanChunkSize the number of sequences matched by a single task of a parallel scan, {@code 0} to
+     *                              scan sequentially
+     * @return the new configuration
+     */
+    public InMemoryEventStoreConfiguration withParallelScanChunkSize(int parallelScanChunkSize) {
+        return new InMemoryEventStoreConfiguration(maxBatchSize, maxLinger, offHeapPayloads, parallelScanChunkSize);
+    }
+}
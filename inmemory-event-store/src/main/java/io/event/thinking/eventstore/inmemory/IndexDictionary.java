@@ -0,0 +1,97 @@
+package io.event.thinking.eventstore.inmemory;
+
+import io.event.thinking.eventstore.api.Index;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns each distinct {@link Index} and assigns it a dense {@code int} id, starting from 0. Events then keep their
+ * indices as a compact sorted {@code int[]} of ids, and repeated indices, like event types or identifiers of hot
+ * domain concepts, are kept in memory only once.
+ *
+ * <p>
+ * Only one thread is allowed to {@link #intern(Set)} while many threads could look up ids and indices at the same
+ * time. An index is registered before its id is published through the map, so any id a reader obtains can be
+ * resolved.
+ * </p>
+ */
+class IndexDictionary {
+
+    /**
+     * Returned by {@link #id(Index)} for indices which have never been interned.
+     */
+    static final int UNKNOWN = -1;
+    private static final int[] NO_IDS = new int[0];
+
+    private final Map<Index, Integer> ids = new ConcurrentHashMap<>();
+    private volatile Index[] indices = new Index[64];
+    private int size;
+
+    /**
+     * Interns given {@code indices}.
+     *
+     * @param indices the indices
+     * @return sorted ids of given {@code indices}
+     */
+    int[] intern(Set<Index> indices) {
+        if (indices.isEmpty()) {
+            return NO_IDS;
+        }
+        var result = new int[indices.size()];
+        int i = 0;
+        for (Index index : indices) {
+            result[i++] = intern(index);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private int intern(Index index) {
+        Integer id = ids.get(index);
+        if (id != null) {
+            return id;
+        }
+        if (size == indices.length) {
+            indices = Arrays.copyOf(indices, size * 2);
+        }
+        indices[size] = index;
+        ids.put(index, size);
+        return size++;
+    }
+
+    /**
+     * @param index the index
+     * @return the id of the given {@code index}, or {@link #UNKNOWN} if it has never been interned
+     */
+    int id(Index index) {
+        return ids.getOrDefault(index, UNKNOWN);
+    }
+
+    /**
+     * Resolves the index with given {@code id}.
+     *
+     * @param id the id of an interned index
+     * @return the index
+     */
+    Index index(int id) {
+        return indices[id];
+    }
+
+    /**
+     * Resolves the indices with given {@code ids}.
+     *
+     * @param ids ids of interned indices
+     * @return the set of indices
+     */
+    Set<Index> indices(int[] ids) {
+        var current = indices;
+        var result = new Index[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = current[ids[i]];
+        }
+        return Set.of(result);
+    }
+}
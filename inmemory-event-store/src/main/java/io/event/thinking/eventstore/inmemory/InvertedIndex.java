@@ -0,0 +1,333 @@
+package io.event.thinking.eventstore.inmemory;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Criterion;
+import io.event.thinking.eventstore.api.Index;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+import static io.event.thinking.eventstore.inmemory.ReverseSequenceCursor.START;
+import static io.event.thinking.eventstore.inmemory.SequenceCursor.END;
+
+/**
+ * Maps each {@link Index}, by its id in the {@link IndexDictionary}, to the ascending {@link PostingList} of global
+ * sequences of events carrying it. {@link Criteria} are {@link CriteriaMatcher compiled} and answered by taking the
+ * union of posting lists of the rarest index of each {@link Criterion}. Events found in these posting lists are checked
+ * against the remaining indices of their criterions using the sorted ids of the event.
+ *
+ * <p>
+ * Only one thread is allowed to {@link #add(long, int[])} while many threads could query the index at the same time.
+ * Posting lists are published with release semantics, so a reader that learned about an id from the dictionary before
+ * its posting list was created simply finds no posting list.
+ * </p>
+ */
+class InvertedIndex {
+
+    private static final VarHandle POSTINGS = MethodHandles.arrayElementVarHandle(PostingList[].class);
+
+    private final IndexDictionary dictionary;
+    private final SegmentedLog<int[]> eventIds;
+    private volatile PostingList[] postings = new PostingList[64];
+
+    /**
+     * Instantiates the index over ids of the given {@code dictionary}.
+     *
+     * @param dictionary the dictionary used to intern indices of events
+     * @param eventIds   sorted ids of indices of each event, addressed by sequence. Ids of an event must be stored
+     *                   before the event is {@link #add(long, int[]) added} to this index.
+     */
+    InvertedIndex(IndexDictionary dictionary, SegmentedLog<int[]> eventIds) {
+        this.dictionary = dictionary;
+        this.eventIds = eventIds;
+    }
+
+    /**
+     * Adds the given {@code sequence} to posting lists of all given interned indices.
+     *
+     * @param sequence the global sequence of the event
+     * @param ids      ids of indices of the event
+     */
+    void add(long sequence, int[] ids) {
+        for (int id : ids) {
+            var current = postings;
+            if (id >= current.length) {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, id + 1));
+                postings = current;
+            }
+            var list = (PostingList) POSTINGS.getAcquire(current, id);
+            if (list == null) {
+                list = new PostingList();
+                POSTINGS.setRelease(current, id, list);
+            }
+            list.append(sequence);
+        }
+    }
+
+    /**
+     * Checks whether the given {@code criteria} matches every event, in which case there is no point in consulting
+     * this index.
+     *
+     * @param criteria the criteria, could be {@code null}
+     * @return {@code true} if every event matches the {@code criteria}, {@code false} otherwise
+     */
+    static boolean matchesAll(Criteria criteria) {
+        return criteria == null
+                || criteria.criteria().isEmpty()
+                || criteria.criteria().stream().anyMatch(c -> c.indices().isEmpty());
+    }
+
+    /**
+     * Streams, in ascending order, global sequences of events matching the given {@code criteria} starting from the
+     * given {@code fromSequence}. The {@code criteria} must not be {@link #matchesAll(Criteria) matching all} events.
+     *
+     * @param fromSequence the inclusive starting sequence
+     * @param criteria     the criteria
+     * @return the stream of matching sequences
+     */
+    LongStream sequences(long fromSequence, Criteria criteria) {
+        var cursor = cursor(compile(criteria), fromSequence);
+        return LongStream.iterate(cursor.advance(fromSequence), s -> s != END, s -> cursor.advance(s + 1));
+    }
+
+    /**
+     * Streams, in descending order, global sequences of events matching the given {@code criteria} going backward from
+     * the given {@code fromSequence}. Posting lists are visited from their end, so only as many sequences are decoded
+     * as are consumed from the stream, give or take a block. The {@code criteria} must not be
+     * {@link #matchesAll(Criteria) matching all} events.
+     *
+     * @param fromSequence the inclusive sequence to start from, going backward
+     * @param criteria     the criteria
+     * @return the stream of matching sequences
+     */
+    LongStream reverseSequences(long fromSequence, Criteria criteria) {
+        var cursor = reverseCursor(compile(criteria));
+        return LongStream.iterate(cursor.retreat(fromSequence), s -> s != START, s -> cursor.retreat(s - 1));
+    }
+
+    /**
+     * Checks whether there is at least one event matching the given {@code criteria} between the given
+     * {@code fromSequence} inclusively and {@code toSequence} exclusively. The {@code criteria} must not be
+     * {@link #matchesAll(Criteria) matching all} events.
+     * <p>
+     * An index which has not been seen at or after {@code fromSequence} cannot contribute a match, which is answered by
+     * comparing the last sequence of its posting list. For a single index criterion whose last sequence is in range,
+     * this is the whole check. Otherwise, only events carrying the rarest index of a criterion are checked.
+     * </p>
+     *
+     * @param fromSequence the inclusive starting sequence
+     * @param toSequence   the exclusive end sequence
+     * @param criteria     the criteria
+     * @return {@code true} if there is a matching event, {@code false} otherwise
+     */
+    boolean matchesAny(long fromSequence, long toSequence, Criteria criteria) {
+        var matcher = compile(criteria);
+        for (int id : matcher.rarest()) {
+            var list = postingList(id);
+            if (list != null && matcher.matchesAllCarrying(id)) {
+                long last = list.last();
+                if (last >= fromSequence && last < toSequence) {
+                    return true;
+                }
+            }
+        }
+        return cursor(matcher, fromSequence).advance(fromSequence) < toSequence;
+    }
+
+    /**
+     * Counts events matching the given {@code criteria} between the given {@code fromSequence} inclusively and
+     * {@code toSequence} exclusively. The {@code criteria} must not be {@link #matchesAll(Criteria) matching all}
+     * events.
+     * <p>
+     * If every matching event carries a single index, the count is the difference of ranks of both sequences in its
+     * posting list. Otherwise, matching sequences are counted without reading the events, only their ids.
+     * </p>
+     *
+     * @param fromSequence the inclusive starting sequence
+     * @param toSequence   the exclusive end sequence
+     * @param criteria     the criteria
+     * @return the number of matching events
+     */
+    long count(long fromSequence, long toSequence, Criteria criteria) {
+        var matcher = compile(criteria);
+        var rarest = matcher.rarest();
+        if (rarest.length == 1 && matcher.matchesAllCarrying(rarest[0])) {
+            var list = postingList(rarest[0]);
+            return list == null ? 0L : Math.max(0, list.rank(toSequence) - list.rank(fromSequence));
+        }
+        var cursor = cursor(matcher, fromSequence);
+        long count = 0L;
+        long sequence = cursor.advance(fromSequence);
+        while (sequence < toSequence) {
+            count++;
+            sequence = cursor.advance(sequence + 1);
+        }
+        return count;
+    }
+
+    /**
+     * @param index the index
+     * @return the number of events carrying the given {@code index}
+     */
+    int frequency(Index index) {
+        var list = postingList(dictionary.id(index));
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * Compiles the given {@code criteria} using sizes of posting lists to find the rarest index of each criterion.
+     *
+     * @param criteria the criteria
+     * @return the compiled matcher
+     */
+    CriteriaMatcher compile(Criteria criteria) {
+        return CriteriaMatcher.compile(criteria, dictionary, id -> {
+            var list = postingList(id);
+            return list == null ? 0 : list.size();
+        });
+    }
+
+    /**
+     * Creates a cursor over the union of posting lists of the rarest indices of the {@code matcher}. Sequences from
+     * posting lists which do not match on their own are checked against ids of the event.
+     */
+    private SequenceCursor cursor(CriteriaMatcher matcher, long fromSequence) {
+        var cursors = new ArrayList<SequenceCursor>();
+        for (int id : matcher.rarest()) {
+            var list = postingList(id);
+            if (list == null || list.last() < fromSequence) {
+                continue;
+            }
+            var cursor = list.cursor();
+            cursors.add(matcher.matchesAllCarrying(id) ? cursor : new MatchingCursor(cursor, matcher));
+        }
+        return new UnionCursor(cursors.toArray(SequenceCursor[]::new));
+    }
+
+    /**
+     * Creates a reverse cursor over the union of posting lists of the rarest indices of the {@code matcher}, like
+     * {@link #cursor(CriteriaMatcher, long)} does going forward.
+     */
+    private ReverseSequenceCursor reverseCursor(CriteriaMatcher matcher) {
+        var cursors = new ArrayList<ReverseSequenceCursor>();
+        for (int id : matcher.rarest()) {
+            var list = postingList(id);
+            if (list == null) {
+                continue;
+            }
+            var cursor = list.reverseCursor();
+            cursors.add(matcher.matchesAllCarrying(id) ? cursor : new ReverseMatchingCursor(cursor, matcher));
+        }
+        return new ReverseUnionCursor(cursors.toArray(ReverseSequenceCursor[]::new));
+    }
+
+    private PostingList postingList(int id) {
+        var current = postings;
+        return id == IndexDictionary.UNKNOWN || id >= current.length
+                ? null
+                : (PostingList) POSTINGS.getAcquire(current, id);
+    }
+
+    /**
+     * Positioned at sequences of its cursor whose events match the {@link CriteriaMatcher}.
+     */
+    private class MatchingCursor implements SequenceCursor {
+
+        private final SequenceCursor cursor;
+        private final CriteriaMatcher matcher;
+
+        MatchingCursor(SequenceCursor cursor, CriteriaMatcher matcher) {
+            this.cursor = cursor;
+            this.matcher = matcher;
+        }
+
+        @Override
+        public long advance(long target) {
+            long sequence = cursor.advance(target);
+            while (sequence != END && !matcher.matches(eventIds.get(sequence))) {
+                sequence = cursor.advance(sequence + 1);
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Positioned at the smallest sequence any of its cursors is positioned at.
+     */
+    private static class UnionCursor implements SequenceCursor {
+
+        private final SequenceCursor[] cursors;
+        private final long[] positions;
+
+        UnionCursor(SequenceCursor[] cursors) {
+            this.cursors = cursors;
+            this.positions = new long[cursors.length];
+            Arrays.fill(positions, Long.MIN_VALUE);
+        }
+
+        @Override
+        public long advance(long target) {
+            long min = END;
+            for (int i = 0; i < cursors.length; i++) {
+                if (positions[i] < target) {
+                    positions[i] = cursors[i].advance(target);
+                }
+                min = Math.min(min, positions[i]);
+            }
+            return min;
+        }
+    }
+
+    /**
+     * Positioned at sequences of its reverse cursor whose events match the {@link CriteriaMatcher}.
+     */
+    private class ReverseMatchingCursor implements ReverseSequenceCursor {
+
+        private final ReverseSequenceCursor cursor;
+        private final CriteriaMatcher matcher;
+
+        ReverseMatchingCursor(ReverseSequenceCursor cursor, CriteriaMatcher matcher) {
+            this.cursor = cursor;
+            this.matcher = matcher;
+        }
+
+        @Override
+        public long retreat(long target) {
+            long sequence = cursor.retreat(target);
+            while (sequence != START && !matcher.matches(eventIds.get(sequence))) {
+                sequence = cursor.retreat(sequence - 1);
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Positioned at the greatest sequence any of its reverse cursors is positioned at.
+     */
+    private static class ReverseUnionCursor implements ReverseSequenceCursor {
+
+        private final ReverseSequenceCursor[] cursors;
+        private final long[] positions;
+
+        ReverseUnionCursor(ReverseSequenceCursor[] cursors) {
+            this.cursors = cursors;
+            this.positions = new long[cursors.length];
+            Arrays.fill(positions, Long.MAX_VALUE);
+        }
+
+        @Override
+        public long retreat(long target) {
+            long max = START;
+            for (int i = 0; i < cursors.length; i++) {
+                if (positions[i] > target) {
+                    positions[i] = cursors[i].retreat(target);
+                }
+                max = Math.max(max, positions[i]);
+            }
+            return max;
+        }
+    }
+}
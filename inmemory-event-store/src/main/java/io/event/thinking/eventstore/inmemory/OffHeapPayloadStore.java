@@ -0,0 +1,68 @@
+package io.event.thinking.eventstore.inmemory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Copies payloads into off-heap memory, so that the heap does not grow with the total payload volume. Payloads are
+ * written one after the other into direct {@link ByteBuffer} chunks, each prefixed with its length. The position of
+ * each payload is kept in segments of primitive {@code long}s addressed by sequence. Reading a payload copies it back
+ * into a new {@code byte[]}.
+ *
+ * <p>
+ * Off-heap memory is released when this store becomes unreachable. Chunks are allocated as direct buffers, hence their
+ * total size is limited by {@code -XX:MaxDirectMemorySize}, and {@link #append(long, byte[])} throws an
+ * {@link OutOfMemoryError} when a new chunk does not fit.
+ * </p>
+ */
+class OffHeapPayloadStore implements PayloadStore {
+
+    private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int SEGMENT_SHIFT = 13;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private volatile long[][] addresses = new long[16][];
+    private int chunkPosition;
+
+    @Override
+    public void append(long sequence, byte[] payload) {
+        int required = Integer.BYTES + payload.length;
+        var current = chunks;
+        if (current.length == 0 || chunkPosition + required > current[current.length - 1].capacity()) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, required));
+            chunks = current;
+            chunkPosition = 0;
+        }
+        var chunk = current[current.length - 1];
+        chunk.putInt(chunkPosition, payload.length);
+        chunk.put(chunkPosition + Integer.BYTES, payload);
+        storeAddress(sequence, ((long) (current.length - 1) << 32) | chunkPosition);
+        chunkPosition += required;
+    }
+
+    @Override
+    public byte[] get(long sequence) {
+        long address = addresses[(int) (sequence >>> SEGMENT_SHIFT)][(int) (sequence & SEGMENT_MASK)];
+        var chunk = chunks[(int) (address >>> 32)];
+        int position = (int) address;
+        var payload = new byte[chunk.getInt(position)];
+        chunk.get(position + Integer.BYTES, payload);
+        return payload;
+    }
+
+    private void storeAddress(long sequence, long address) {
+        int segment = (int) (sequence >>> SEGMENT_SHIFT);
+        var current = addresses;
+        if (segment == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            addresses = current;
+        }
+        if (current[segment] == null) {
+            current[segment] = new long[SEGMENT_SIZE];
+        }
+        current[segment][(int) (sequence & SEGMENT_MASK)] = address;
+    }
+}
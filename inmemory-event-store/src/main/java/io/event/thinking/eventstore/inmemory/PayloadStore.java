@@ -0,0 +1,26 @@
+package io.event.thinking.eventstore.inmemory;
+
+/**
+ * Stores event payloads addressed by the global sequence of the event.
+ *
+ * <p>
+ * Only one thread is allowed to {@link #append(long, byte[])}. Readers must only {@link #get(long)} payloads whose
+ * append has been published to them by other means, e.g. the committed watermark of the {@link InMemoryEventStore}.
+ * </p>
+ */
+interface PayloadStore {
+
+    /**
+     * Stores the {@code payload} of the event at the given {@code sequence}, which must be the next sequence.
+     *
+     * @param sequence the sequence of the event
+     * @param payload  the payload of the event
+     */
+    void append(long sequence, byte[] payload);
+
+    /**
+     * @param sequence the sequence of the event
+     * @return the payload of the event at the given {@code sequence}
+     */
+    byte[] get(long sequence);
+}
@@ -0,0 +1,348 @@
+package io.event.thinking.eventstore.inmemory;
+
+import java.util.Arrays;
+
+/**
+ * Append-only posting list of ascending global sequences, designed to take as little memory as possible.
+ *
+ * <p>
+ * Sequences are grouped in blocks of {@link #BLOCK_SIZE}. The block being filled keeps raw {@code long}s. Once full, it
+ * is sealed: its first sequence is kept as a skip pointer and the rest is stored as varint encoded deltas, which
+ * usually takes one or two bytes per sequence. Seeking to a sequence uses binary search over skip pointers and decodes
+ * only the block containing the sequence.
+ * </p>
+ * <p>
+ * Only one thread is allowed to {@link #append(long)} while many threads could read the list at the same time. The
+ * block being filled is appended to in place, even while readers see it, but only at slots beyond {@link #size}. The
+ * appender writes the slot first, and then publishes the new {@link #size} with a volatile write, which releases the
+ * slot to readers. Readers read {@link #size} first, and never look beyond it. A block that grows or gets sealed is
+ * replaced in {@link #blocks}, and a replaced block keeps every slot readers could see, so readers holding either of
+ * them see the same sequences.
+ * </p>
+ */
+class PostingList {
+
+    static final int BLOCK_SIZE = 128;
+    private static final int INITIAL_CAPACITY = 2;
+
+    private volatile Block[] blocks = new Block[1];
+    private volatile int size;
+    private volatile long last = -1L;
+
+    /**
+     * Appends the given {@code sequence} at the end of this list. It must be greater than the last appended sequence.
+     *
+     * @param sequence the sequence to append
+     */
+    void append(long sequence) {
+        int size = this.size;
+        int blockIndex = size / BLOCK_SIZE;
+        int position = size % BLOCK_SIZE;
+        if (position == 0) {
+            if (blockIndex == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            }
+            blocks[blockIndex] = new RawBlock(new long[INITIAL_CAPACITY]);
+        }
+        var block = (RawBlock) blocks[blockIndex];
+        if (position == block.values.length) {
+            block = new RawBlock(Arrays.copyOf(block.values, Math.min(BLOCK_SIZE, position * 2)));
+            blocks[blockIndex] = block;
+        }
+        block.values[position] = sequence;
+        if (position == BLOCK_SIZE - 1) {
+            blocks[blockIndex] = PackedBlock.pack(block.values);
+        }
+        last = sequence;
+        this.size = size + 1;
+    }
+
+    /**
+     * @return the number of sequences in this list
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the highest sequence in this list, or {@code -1} if the list is empty
+     */
+    long last() {
+        return last;
+    }
+
+    /**
+     * Counts sequences lower than the given {@code sequence}, using binary search over skip pointers and decoding at
+     * most one block.
+     *
+     * @param sequence the exclusive upper bound of counted sequences
+     * @return the number of sequences in this list lower than the given {@code sequence}
+     */
+    int rank(long sequence) {
+        int size = this.size;
+        var current = blocks;
+        if (size == 0 || current[0].first() >= sequence) {
+            return 0;
+        }
+        int low = 0;
+        int high = (size - 1) / BLOCK_SIZE;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (current[mid].first() < sequence) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int count = low == (size - 1) / BLOCK_SIZE ? size - low * BLOCK_SIZE : BLOCK_SIZE;
+        var buffer = new long[count];
+        current[low].decode(buffer, count);
+        int position = 1;
+        while (position < count && buffer[position] < sequence) {
+            position++;
+        }
+        return low * BLOCK_SIZE + position;
+    }
+
+    /**
+     * @return a new cursor over sequences currently present in this list
+     */
+    SequenceCursor cursor() {
+        int size = this.size;
+        return new Cursor(blocks, size);
+    }
+
+    /**
+     * @return a new cursor visiting sequences currently present in this list from the last one
+     */
+    ReverseSequenceCursor reverseCursor() {
+        int size = this.size;
+        return new ReverseCursor(blocks, size);
+    }
+
+    /**
+     * Estimates the number of bytes this list occupies on the heap, assuming compressed object references.
+     *
+     * @return the estimated number of bytes
+     */
+    long sizeInBytes() {
+        var current = blocks;
+        long bytes = 16 + 16 + 4L * current.length;
+        for (Block block : current) {
+            if (block != null) {
+                bytes += block.sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private sealed interface Block permits RawBlock, PackedBlock {
+
+        long first();
+
+        /**
+         * Decodes the first {@code count} sequences of this block into the given {@code buffer}.
+         */
+        void decode(long[] buffer, int count);
+
+        long sizeInBytes();
+    }
+
+    private record RawBlock(long[] values) implements Block {
+
+        @Override
+        public long first() {
+            return values[0];
+        }
+
+        @Override
+        public void decode(long[] buffer, int count) {
+            System.arraycopy(values, 0, buffer, 0, count);
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 16 + 16 + 8L * values.length;
+        }
+    }
+
+    private record PackedBlock(long first, byte[] deltas) implements Block {
+
+        static PackedBlock pack(long[] values) {
+            var out = new byte[(BLOCK_SIZE - 1) * 10];
+            int length = 0;
+            for (int i = 1; i < BLOCK_SIZE; i++) {
+                long delta = values[i] - values[i - 1];
+                while ((delta & ~0x7FL) != 0) {
+                    out[length++] = (byte) ((delta & 0x7F) | 0x80);
+                    delta >>>= 7;
+                }
+                out[length++] = (byte) delta;
+            }
+            return new PackedBlock(values[0], Arrays.copyOf(out, length));
+        }
+
+        @Override
+        public void decode(long[] buffer, int count) {
+            buffer[0] = first;
+            int offset = 0;
+            for (int i = 1; i < count; i++) {
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = deltas[offset++];
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                buffer[i] = buffer[i - 1] + delta;
+            }
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 16 + 8 + 16 + deltas.length;
+        }
+    }
+
+    /**
+     * Cursor over a snapshot of the list: the blocks and the size captured at its creation.
+     */
+    private static class Cursor implements SequenceCursor {
+
+        private final Block[] blocks;
+        private final int size;
+        private final int blockCount;
+        private final long[] buffer = new long[BLOCK_SIZE];
+        private int blockIndex = -1;
+        private int count;
+        private int position;
+
+        Cursor(Block[] blocks, int size) {
+            this.blocks = blocks;
+            this.size = size;
+            this.blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        }
+
+        @Override
+        public long advance(long target) {
+            if (size == 0 || blockIndex >= blockCount) {
+                return END;
+            }
+            if (blockIndex < 0 || target > buffer[count - 1]) {
+                int next = seekBlock(target);
+                if (next != blockIndex) {
+                    load(next);
+                }
+                if (target > buffer[count - 1]) {
+                    if (next + 1 >= blockCount) {
+                        blockIndex = blockCount;
+                        return END;
+                    }
+                    load(next + 1);
+                }
+            }
+            while (buffer[position] < target) {
+                position++;
+            }
+            return buffer[position];
+        }
+
+        /**
+         * Finds the last block, not before the current one, whose first sequence is not greater than the
+         * {@code target}. If there is no such block, the first block is returned.
+         */
+        private int seekBlock(long target) {
+            int low = Math.max(blockIndex, 0);
+            int high = blockCount - 1;
+            if (blocks[low].first() > target) {
+                return low;
+            }
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (blocks[mid].first() <= target) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        private void load(int index) {
+            blockIndex = index;
+            count = index == blockCount - 1 ? size - index * BLOCK_SIZE : BLOCK_SIZE;
+            blocks[index].decode(buffer, count);
+            position = 0;
+        }
+    }
+
+    /**
+     * Reverse cursor over a snapshot of the list: the blocks and the size captured at its creation. Blocks can only be
+     * decoded forward, so each visited block is decoded as a whole and then walked backward.
+     */
+    private static class ReverseCursor implements ReverseSequenceCursor {
+
+        private final Block[] blocks;
+        private final int size;
+        private final int blockCount;
+        private final long[] buffer = new long[BLOCK_SIZE];
+        private int blockIndex;
+        private int position;
+
+        ReverseCursor(Block[] blocks, int size) {
+            this.blocks = blocks;
+            this.size = size;
+            this.blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            this.blockIndex = blockCount;
+        }
+
+        @Override
+        public long retreat(long target) {
+            if (blockIndex < 0) {
+                return START;
+            }
+            if (blockIndex == blockCount || target < buffer[0]) {
+                int previous = seekBlock(target);
+                if (previous < 0) {
+                    blockIndex = -1;
+                    return START;
+                }
+                load(previous);
+            }
+            while (buffer[position] > target) {
+                position--;
+            }
+            return buffer[position];
+        }
+
+        /**
+         * Finds the last block, before the current one, whose first sequence is not greater than the {@code target}.
+         *
+         * @return the index of the block, or {@code -1} if there is none
+         */
+        private int seekBlock(long target) {
+            int low = 0;
+            int high = blockIndex - 1;
+            if (high < 0 || blocks[low].first() > target) {
+                return -1;
+            }
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (blocks[mid].first() <= target) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        private void load(int index) {
+            blockIndex = index;
+            int count = index == blockCount - 1 ? size - index * BLOCK_SIZE : BLOCK_SIZE;
+            blocks[index].decode(buffer, count);
+            position = count - 1;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package io.event.thinking.eventstore.inmemory;
+
+/**
+ * Backward-only cursor over an ascending series of global sequences, visiting it from the end. Targets passed to
+ * {@link #retreat(long)} must never increase between invocations on the same cursor.
+ */
+interface ReverseSequenceCursor {
+
+    /**
+     * Returned by {@link #retreat(long)} when there are no more sequences.
+     */
+    long START = -1L;
+
+    /**
+     * Moves this cursor to the last sequence lower or equal to the given {@code target}.
+     *
+     * @param target the inclusive upper bound of the sequence to move to
+     * @return the sequence this cursor is positioned at, or {@link #START} if there is none
+     */
+    long retreat(long target);
+}
@@ -0,0 +1,51 @@
+package io.event.thinking.eventstore.inmemory;
+
+import java.util.Arrays;
+
+/**
+ * Append-only log of entries addressed directly by their dense global sequence, starting from 0. Entries are kept in
+ * fixed-size segments, so positioning at a sequence is O(1) and the log grows without copying entries.
+ *
+ * <p>
+ * Only one thread is allowed to {@link #append(long, Object)}. Readers must only {@link #get(long)} sequences whose
+ * append has been published to them by other means, e.g. the committed watermark of the {@link InMemoryEventStore}.
+ * </p>
+ *
+ * @param <T> the type of entries
+ */
+class SegmentedLog<T> {
+
+    private static final int SEGMENT_SHIFT = 13;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private volatile Object[][] segments = new Object[16][];
+
+    /**
+     * Stores the {@code entry} at the given {@code sequence}, which must be the next sequence of this log.
+     *
+     * @param sequence the sequence of the entry
+     * @param entry    the entry
+     */
+    void append(long sequence, T entry) {
+        int segment = (int) (sequence >>> SEGMENT_SHIFT);
+        var current = segments;
+        if (segment == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            segments = current;
+        }
+        if (current[segment] == null) {
+            current[segment] = new Object[SEGMENT_SIZE];
+        }
+        current[segment][(int) (sequence & SEGMENT_MASK)] = entry;
+    }
+
+    /**
+     * @param sequence the sequence of the entry
+     * @return the entry stored at the given {@code sequence}
+     */
+    @SuppressWarnings("unchecked")
+    T get(long sequence) {
+        return (T) segments[(int) (sequence >>> SEGMENT_SHIFT)][(int) (sequence & SEGMENT_MASK)];
+    }
+}
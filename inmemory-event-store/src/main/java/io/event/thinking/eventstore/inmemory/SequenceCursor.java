@@ -0,0 +1,21 @@
+package io.event.thinking.eventstore.inmemory;
+
+/**
+ * Forward-only cursor over an ascending series of global sequences. Targets passed to {@link #advance(long)} must never
+ * decrease between invocations on the same cursor.
+ */
+interface SequenceCursor {
+
+    /**
+     * Returned by {@link #advance(long)} when there are no more sequences.
+     */
+    long END = Long.MAX_VALUE;
+
+    /**
+     * Moves this cursor to the first sequence greater or equal to the given {@code target}.
+     *
+     * @param target the inclusive lower bound of the sequence to move to
+     * @return the sequence this cursor is positioned at, or {@link #END} if there is none
+     */
+    long advance(long target);
+}
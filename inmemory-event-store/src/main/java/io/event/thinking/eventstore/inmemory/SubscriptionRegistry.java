@@ -0,0 +1,164 @@
+package io.event.thinking.eventstore.inmemory;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Criterion;
+import io.event.thinking.eventstore.api.Index;
+import reactor.core.Disposable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+import static io.event.thinking.eventstore.inmemory.InvertedIndex.matchesAll;
+
+/**
+ * Routes committed events to live streams waiting for them. Instead of matching each event against the criteria of
+ * every subscriber, criteria of subscribers are indexed the other way around, like in a percolator: each criterion is
+ * registered under a single anchor index, the rarest of its indices when the subscription is made. An event then only
+ * visits registrations anchored at one of its own indices, and checks the remaining indices of their criterions
+ * against its sorted ids. The cost of routing an event grows with the number of subscribers whose criterions share an
+ * index with it, not with the number of all subscribers.
+ *
+ * <p>
+ * Subscribers whose criteria match all events are kept aside and notified once per commit. Many threads could
+ * {@link #register(Criteria, Runnable) register} while the appender {@link #dispatch(int[]) dispatches} events.
+ * </p>
+ */
+class SubscriptionRegistry {
+
+    private final IndexDictionary dictionary;
+    private final ToIntFunction<Index> frequency;
+    private final Map<Index, Set<Registration>> anchored = new ConcurrentHashMap<>();
+    private final Set<Runnable> unfiltered = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param dictionary the dictionary used to intern indices of events
+     * @param frequency  the number of events carrying an index, used to find the rarest index of a criterion
+     */
+    SubscriptionRegistry(IndexDictionary dictionary, ToIntFunction<Index> frequency) {
+        this.dictionary = dictionary;
+        this.frequency = frequency;
+    }
+
+    /**
+     * Registers the {@code listener} to be run whenever an event matching the {@code criteria} is
+     * {@link #dispatch(int[]) dispatched}.
+     *
+     * @param criteria the criteria, could be {@code null}
+     * @param listener the listener
+     * @return disposes the registration
+     */
+    Disposable register(Criteria criteria, Runnable listener) {
+        if (matchesAll(criteria)) {
+            unfiltered.add(listener);
+            return () -> unfiltered.remove(listener);
+        }
+        var registered = new ArrayList<Registration>();
+        for (Criterion criterion : criteria.criteria()) {
+            var registration = registration(criterion, listener);
+            anchored.compute(registration.anchor(), (anchor, registrations) -> {
+                var updated = registrations == null ? ConcurrentHashMap.<Registration>newKeySet() : registrations;
+                updated.add(registration);
+                return updated;
+            });
+            registered.add(registration);
+        }
+        return () -> registered.forEach(this::remove);
+    }
+
+    private Registration registration(Criterion criterion, Runnable listener) {
+        Index anchor = null;
+        for (Index index : criterion.indices()) {
+            if (anchor == null || frequency.applyAsInt(index) < frequency.applyAsInt(anchor)) {
+                anchor = index;
+            }
+        }
+        var anchorIndex = anchor;
+        var others = criterion.indices()
+                              .stream()
+                              .filter(index -> !index.equals(anchorIndex))
+                              .toArray(Index[]::new);
+        return new Registration(anchor, others, listener);
+    }
+
+    private void remove(Registration registration) {
+        anchored.computeIfPresent(registration.anchor(), (anchor, registrations) -> {
+            registrations.remove(registration);
+            return registrations.isEmpty() ? null : registrations;
+        });
+    }
+
+    /**
+     * @return whether there are no registrations, in which case there is no need to dispatch
+     */
+    boolean isEmpty() {
+        return anchored.isEmpty() && unfiltered.isEmpty();
+    }
+
+    /**
+     * Runs listeners of registrations matching the event with given sorted {@code ids}. A listener could be run more
+     * than once for the same event.
+     *
+     * @param ids sorted ids of indices of the event
+     */
+    void dispatch(int[] ids) {
+        if (anchored.isEmpty()) {
+            return;
+        }
+        for (int id : ids) {
+            var registrations = anchored.get(dictionary.index(id));
+            if (registrations != null) {
+                for (Registration registration : registrations) {
+                    if (registration.matches(ids, dictionary)) {
+                        registration.listener().run();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs listeners of registrations matching all events, once new events were committed.
+     */
+    void dispatchCommit() {
+        unfiltered.forEach(Runnable::run);
+    }
+
+    /**
+     * A criterion of a subscriber, registered under its {@code anchor} index next to the {@code others} indices of the
+     * criterion.
+     */
+    private static final class Registration {
+
+        private final Index anchor;
+        private final Index[] others;
+        private final Runnable listener;
+
+        private Registration(Index anchor, Index[] others, Runnable listener) {
+            this.anchor = anchor;
+            this.others = others;
+            this.listener = listener;
+        }
+
+        Index anchor() {
+            return anchor;
+        }
+
+        Runnable listener() {
+            return listener;
+        }
+
+        boolean matches(int[] ids, IndexDictionary dictionary) {
+            for (Index other : others) {
+                int id = dictionary.id(other);
+                if (id == IndexDictionary.UNKNOWN || Arrays.binarySearch(ids, id) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
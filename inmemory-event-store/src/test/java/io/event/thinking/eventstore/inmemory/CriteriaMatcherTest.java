@@ -0,0 +1,80 @@
+package io.event.thinking.eventstore.inmemory;
+
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Criterion;
+import io.event.thinking.eventstore.api.Index;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static io.event.thinking.eventstore.api.Index.index;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CriteriaMatcherTest {
+
+    private final Index type = index("eventType", "StudentSubscribed");
+    private final Index course = index("courseId", "c1");
+    private final Index student = index("studentId", "s1");
+    private final Index otherStudent = index("studentId", "s2");
+
+    private IndexDictionary dictionary;
+
+    @BeforeEach
+    void setUp() {
+        dictionary = new IndexDictionary();
+        dictionary.intern(Set.of(type, course, student, otherStudent));
+    }
+
+    @Test
+    void criterionOfMultipleIndices() {
+        var matcher = compile(Criteria.anyOf(Criterion.allOf(type, course, student)));
+
+        assertTrue(matcher.matches(dictionary.intern(Set.of(type, course, student))));
+        assertFalse(matcher.matches(dictionary.intern(Set.of(type, course, otherStudent))));
+        assertFalse(matcher.matches(dictionary.intern(Set.of(course, student))));
+    }
+
+    @Test
+    void multipleCriterionsSharingRarestIndex() {
+        var matcher = compile(Criteria.anyOf(Criterion.allOf(type, student), Criterion.allOf(course, student)));
+
+        assertArrayEquals(new int[]{dictionary.id(student)}, matcher.rarest());
+        assertFalse(matcher.matchesAllCarrying(dictionary.id(student)));
+        assertTrue(matcher.matches(dictionary.intern(Set.of(type, student))));
+        assertTrue(matcher.matches(dictionary.intern(Set.of(course, student))));
+        assertFalse(matcher.matches(dictionary.intern(Set.of(type, course))));
+        assertFalse(matcher.matches(dictionary.intern(Set.of(student))));
+    }
+
+    @Test
+    void singleIndexCriterion() {
+        var matcher = compile(Criteria.anyOf(Criterion.allOf(course)));
+
+        assertTrue(matcher.matchesAllCarrying(dictionary.id(course)));
+        assertTrue(matcher.matches(dictionary.intern(Set.of(type, course))));
+        assertFalse(matcher.matches(dictionary.intern(Set.of(type, student))));
+    }
+
+    @Test
+    void criterionWithUnknownIndexNeverMatches() {
+        var matcher = compile(Criteria.anyOf(Criterion.allOf(course, index("courseId", "unknown"))));
+
+        assertArrayEquals(new int[0], matcher.rarest());
+        assertFalse(matcher.matches(dictionary.intern(Set.of(type, course, student))));
+    }
+
+    /**
+     * Frequencies make the student index the rarest one, followed by the course index.
+     */
+    private CriteriaMatcher compile(Criteria criteria) {
+        return CriteriaMatcher.compile(criteria, dictionary, id -> {
+            if (id == dictionary.id(student)) {
+                return 1;
+            }
+            return id == dictionary.id(course) ? 100 : 1_000;
+        });
+    }
+}
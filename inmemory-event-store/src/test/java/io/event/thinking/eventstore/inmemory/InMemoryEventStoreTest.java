@@ -2,273 +2,170 @@ package io.event.thinking.eventstore.inmemory;
 
 import io.event.thinking.eventstore.api.Criteria;
 import io.event.thinking.eventstore.api.Criterion;
+import io.event.thinking.eventstore.api.Event;
+import io.event.thinking.eventstore.api.Index;
 import io.event.thinking.eventstore.api.InvalidConsistencyConditionException;
 import io.event.thinking.eventstore.api.MarkedEvents;
 import io.event.thinking.eventstore.api.SequencedEvent;
-import org.junit.jupiter.api.BeforeEach;
+import io.event.thinking.eventstore.support.EventStoreContractTest;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import static io.event.thinking.eventstore.api.ConsistencyCondition.consistencyCondition;
 import static io.event.thinking.eventstore.api.Criteria.anyOf;
 import static io.event.thinking.eventstore.api.Criterion.allOf;
-import static io.event.thinking.eventstore.api.SequencedEvent.sequencedEvent;
 import static io.event.thinking.eventstore.api.Index.index;
 import static io.event.thinking.eventstore.api.Event.event;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
-class InMemoryEventStoreTest {
+class InMemoryEventStoreTest extends EventStoreContractTest<InMemoryEventStore> {
 
-    private InMemoryEventStore eventStore;
-
-    @BeforeEach
-    void setUp() {
-        eventStore = new InMemoryEventStore();
+    @Override
+    protected InMemoryEventStore createEventStore() {
+        return new InMemoryEventStore();
     }
 
     @Test
-    void appendWithNoCondition() {
+    void failedTransactionIsNotAppendedAtAll() {
+        StepVerifier.create(eventStore.append(List.of(event(emptyPayload(), index("key", "value")),
+                                                      new Event(null, emptyPayload()))))
+                    .verifyError(IllegalArgumentException.class);
+
+        MarkedEvents read = eventStore.read(0L, anyOf());
+        assertEquals(0L, read.consistencyMarker());
+        StepVerifier.create(read.flux())
+                    .verifyComplete();
         StepVerifier.create(eventStore.append(event(emptyPayload())))
                     .expectNext(0L)
                     .verifyComplete();
-    }
-
-    @Test
-    void appendTransaction() {
-        StepVerifier.create(eventStore.append(List.of(event(emptyPayload()),
-                                                      event(emptyPayload()),
-                                                      event(emptyPayload()))))
-                    .expectNext(2L)
+        StepVerifier.create(eventStore.read(0L, anyOf(allOf(index("key", "value")))).flux())
                     .verifyComplete();
     }
 
     @Test
-    void multipleAppendsWithNoCondition() {
-        var event = event(emptyPayload());
-        var appends = Flux.merge(eventStore.append(event),
-                                 eventStore.append(event),
-                                 eventStore.append(event),
-                                 eventStore.append(event),
-                                 eventStore.append(event));
-        StepVerifier.create(appends)
-                    .expectNext(0L, 1L, 2L, 3L, 4L)
-                    .verifyComplete();
-    }
-
-    @Test
-    void multipleAppendsWithNonConflictingCondition() {
-        var index1 = index("key1", "value1");
-        var index2 = index("key2", "value2");
-        var event1 = event(emptyPayload(), index1);
-        var event2 = event(emptyPayload(), index2);
-        var consistencyCondition1 = consistencyCondition(-1L, Criteria.anyOf(Criterion.allOf(index1)));
-        var consistencyCondition2 = consistencyCondition(0L, Criteria.anyOf(Criterion.allOf(index2)));
-
-        var appends = Flux.merge(eventStore.append(event1, consistencyCondition1),
-                                 eventStore.append(event2, consistencyCondition2));
-        StepVerifier.create(appends)
-                    .expectNext(0L, 1L)
-                    .verifyComplete();
+    void appendFailingWithAnErrorIsCompleted() {
+        var failingIndices = new AbstractSet<Index>() {
+            @Override
+            public Iterator<Index> iterator() {
+                throw new OutOfMemoryError();
+            }
+
+            @Override
+            public int size() {
+                throw new OutOfMemoryError();
+            }
+        };
+        var appends = Flux.merge(eventStore.append(event(emptyPayload())),
+                                 eventStore.append(new Event(failingIndices, emptyPayload()))
+                                           .onErrorResume(OutOfMemoryError.class, e -> Mono.just(-1L)));
+
+        StepVerifier.create(appends.collectList())
+                    .assertNext(sequences -> assertEquals(Set.of(0L, -1L), Set.copyOf(sequences)))
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(5));
+        assertEquals(1L, eventStore.read(0L, anyOf()).consistencyMarker());
     }
 
     @Test
-    void multipleAppendsWithConflictingIndicessAndCorrectConsistencyMarker() {
-        var index = index("key", "value");
-        var event1 = event(emptyPayload(), index);
-        var event2 = event(emptyPayload(), index);
-        var consistencyCondition1 = consistencyCondition(0L, Criteria.anyOf(Criterion.allOf(index)));
-        var consistencyCondition2 = consistencyCondition(1L, Criteria.anyOf(Criterion.allOf(index)));
-
-        var appends = Flux.merge(eventStore.append(event1, consistencyCondition1),
-                                 eventStore.append(event2, consistencyCondition2));
-        StepVerifier.create(appends)
-                    .expectNext(0L, 1L)
-                    .verifyComplete();
-    }
-
-    @Test
-    void multipleAppendsWithConflictingCondition() {
+    void batchedAppendsAreValidatedAgainstEarlierMembersOfTheBatch() {
+        eventStore = new InMemoryEventStore(InMemoryEventStoreConfiguration.defaultConfiguration()
+                                                                           .withMaxLinger(Duration.ofMillis(50)));
         var index = index("key", "value");
         var event = event(emptyPayload(), index);
-        var consistencyCondition = consistencyCondition(-1L, Criteria.anyOf(Criterion.allOf(index)));
+        var consistencyCondition = consistencyCondition(0L, Criteria.anyOf(Criterion.allOf(index)));
 
-        var appends = Flux.merge(eventStore.append(event, consistencyCondition),
-                                 eventStore.append(event, consistencyCondition));
+        var appends = Flux.mergeDelayError(3,
+                                           eventStore.append(event, consistencyCondition),
+                                           eventStore.append(event, consistencyCondition),
+                                           eventStore.append(event(emptyPayload())));
         StepVerifier.create(appends)
-                    .expectNext(0L)
+                    .expectNext(0L, 1L)
                     .verifyError(InvalidConsistencyConditionException.class);
     }
 
     @Test
-    void appendWithNonExistingConsistencyMarker() {
-        StepVerifier.create(eventStore.append(event(emptyPayload()), consistencyCondition(100L, Criteria.anyOf())))
-                    .expectNext(0L)
-                    .verifyComplete();
-    }
-
-    @Test
-    void noGapsAppend() throws InterruptedException {
-        Thread[] appenders = new Thread[12];
-        int appendsPerAppender = 1_000;
-
-        for (int i = 0; i < appenders.length; i++) {
-            Thread t = new Thread(() -> {
-                for (int j = 0; j < appendsPerAppender; j++) {
-                    eventStore.append(event(emptyPayload()))
-                              .block();
-                }
-            });
-            appenders[i] = t;
-            t.start();
-        }
-        for (Thread thread : appenders) {
-            thread.join();
-        }
-
-        int expectedSize = appenders.length * appendsPerAppender;
-        StepVerifier.create(eventStore.read()
-                                      .flux()
-                                      .map(SequencedEvent::sequence))
-                    .expectNextSequence(() -> IntStream.range(0, expectedSize)
-                                                       .asLongStream()
-                                                       .iterator())
-                    .verifyComplete();
-    }
-
-    @Test
-    void readFromEmptyEventStore() {
-        var source = eventStore.read(Criteria.anyOf(Criterion.allOf(index("key", "value"))));
-
-        assertEquals(0L, source.consistencyMarker());
-        StepVerifier.create(source.flux())
-                    .verifyComplete();
-    }
-
-    @Test
-    void read() {
-        var index1 = index("key1", "value1");
-        var index2 = index("key2", "value2");
-        var event1 = event(payload("event1"), index1);
-        var event2 = event(payload("event2"), index2);
-
-        var appends = Flux.merge(eventStore.append(event1),
-                                 eventStore.append(event2),
-                                 eventStore.append(event1),
-                                 eventStore.append(event1),
-                                 eventStore.append(event2));
+    void appendsWithBatchOfOne() {
+        eventStore = new InMemoryEventStore(InMemoryEventStoreConfiguration.defaultConfiguration()
+                                                                           .withMaxBatchSize(1));
+        var event = event(emptyPayload());
+        var appends = Flux.merge(eventStore.append(event),
+                                 eventStore.append(event),
+                                 eventStore.append(event));
         StepVerifier.create(appends)
-                    .expectNext(0L, 1L, 2L, 3L, 4L)
-                    .verifyComplete();
-
-        var source1 = eventStore.read(Criteria.anyOf(Criterion.allOf(index1)));
-        assertEquals(5L, source1.consistencyMarker());
-        StepVerifier.create(source1.flux())
-                    .expectNext(sequencedEvent(0L, event1),
-                                sequencedEvent(2L, event1),
-                                sequencedEvent(3L, event1))
-                    .verifyComplete();
-
-        StepVerifier.create(eventStore.append(event2))
-                    .expectNext(5L)
-                    .verifyComplete();
-        var source2 = eventStore.read(Criteria.anyOf(Criterion.allOf(index2)));
-        assertEquals(6L, source2.consistencyMarker());
-        StepVerifier.create(source2.flux())
-                    .expectNext(sequencedEvent(1L, event2),
-                                sequencedEvent(4L, event2),
-                                sequencedEvent(5L, event2))
-                    .verifyComplete();
-    }
-
-    @Test
-    void readFromEmptyEventStoreWithoutCriteria() {
-        StepVerifier.create(eventStore.read()
-                                      .flux())
+                    .expectNext(0L, 1L, 2L)
                     .verifyComplete();
     }
 
     @Test
-    void readWithNullCriteria() {
+    void readWithOffHeapPayloads() {
+        eventStore = new InMemoryEventStore(InMemoryEventStoreConfiguration.defaultConfiguration()
+                                                                           .withOffHeapPayloads(true));
         var index = index("key", "value");
-        var event = event(payload("event"), index);
-        eventStore.append(event)
+        eventStore.append(List.of(event(payload("event1"), index), event(payload("event2"))))
                   .block();
 
-        MarkedEvents result = eventStore.read(0L, null);
-        assertEquals(1L, result.consistencyMarker());
-        StepVerifier.create(result.flux())
-                    .expectNext(sequencedEvent(0L, event))
-                    .verifyComplete();
+        var events = eventStore.read()
+                               .flux()
+                               .map(SequencedEvent::event)
+                               .collectList()
+                               .block();
+        assertEquals(2, events.size());
+        assertEquals(Set.of(index), events.get(0).indices());
+        assertArrayEquals(payload("event1"), events.get(0).payload());
+        assertEquals(Set.of(), events.get(1).indices());
+        assertArrayEquals(payload("event2"), events.get(1).payload());
     }
 
     @Test
-    void readAllEvents() {
-        var index = index("key", "value");
-        var event1 = event(payload("event1"), index);
-        var event2 = event(payload("event2"), index);
-        var event3 = event(payload("event3"), index);
-        var appends = Flux.merge(eventStore.append(event1),
-                                 eventStore.append(event2),
-                                 eventStore.append(event3));
-        StepVerifier.create(appends)
-                    .expectNext(0L, 1L, 2L)
-                    .verifyComplete();
-
+    void transactionWithMissingPayloadIsNotAppendedOffHeap() {
+        eventStore = new InMemoryEventStore(InMemoryEventStoreConfiguration.defaultConfiguration()
+                                                                           .withOffHeapPayloads(true));
+        StepVerifier.create(eventStore.append(List.of(event(payload("event1")), event(null))))
+                    .verifyError(IllegalArgumentException.class);
+
+        assertEquals(0L, eventStore.read().consistencyMarker());
+        eventStore.append(event(payload("event2")))
+                  .block();
         StepVerifier.create(eventStore.read()
-                                      .flux())
-                    .expectNext(sequencedEvent(0L, event1),
-                                sequencedEvent(1L, event2),
-                                sequencedEvent(2L, event3))
+                                      .flux()
+                                      .map(e -> new String(e.event().payload())))
+                    .expectNext("event2")
                     .verifyComplete();
     }
 
     @Test
-    void readFromSeq() {
-        var index = index("key", "value");
-        var event1 = event(payload("event1"), index);
-        var event2 = event(payload("event2"), index);
-        var event3 = event(payload("event3"), index);
-        var appends = Flux.merge(eventStore.append(event1),
-                                 eventStore.append(event2),
-                                 eventStore.append(event3));
-        StepVerifier.create(appends)
-                    .expectNext(0L, 1L, 2L)
-                    .verifyComplete();
-
-        StepVerifier.create(eventStore.read(1L)
-                                      .flux())
-                    .expectNext(sequencedEvent(1L, event2),
-                                sequencedEvent(2L, event3))
-                    .verifyComplete();
-    }
+    void parallelScanPreservesOrder() {
+        eventStore = new InMemoryEventStore(InMemoryEventStoreConfiguration.defaultConfiguration()
+                                                                           .withParallelScanChunkSize(16));
+        var even = index("parity", "even");
+        var events = new ArrayList<Event>();
+        for (int i = 0; i < 1_000; i++) {
+            events.add(event(payload("event" + i), i % 2 == 0 ? even : index("parity", "odd")));
+        }
+        eventStore.append(events)
+                  .block();
 
-    @Test
-    void readFromInvalidSeq() {
-        var index = index("key", "value");
-        var event1 = event(payload("event1"), index);
-        var event2 = event(payload("event2"), index);
-        var event3 = event(payload("event3"), index);
-        var appends = Flux.merge(eventStore.append(event1),
-                                 eventStore.append(event2),
-                                 eventStore.append(event3));
-        StepVerifier.create(appends)
-                    .expectNext(0L, 1L, 2L)
+        StepVerifier.create(eventStore.read(3L, anyOf(allOf(even)))
+                                      .flux()
+                                      .map(SequencedEvent::sequence))
+                    .expectNextSequence(LongStream.range(2L, 500L).map(i -> 2 * i).boxed().toList())
                     .verifyComplete();
-
-        StepVerifier.create(eventStore.read(5L)
-                                      .flux())
+        StepVerifier.create(eventStore.read(10L, null)
+                                      .flux()
+                                      .map(event -> new String(event.event().payload())))
+                    .expectNextSequence(IntStream.range(10, 1_000).mapToObj(i -> "event" + i).toList())
                     .verifyComplete();
     }
-
-    private static byte[] emptyPayload() {
-        return new byte[]{};
-    }
-
-    private static byte[] payload(String payload) {
-        return payload.getBytes();
-    }
 }
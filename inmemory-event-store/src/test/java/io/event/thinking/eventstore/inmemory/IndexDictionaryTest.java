@@ -0,0 +1,55 @@
+package io.event.thinking.eventstore.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static io.event.thinking.eventstore.api.Index.index;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class IndexDictionaryTest {
+
+    @Test
+    void internAssignsSortedIds() {
+        var dictionary = new IndexDictionary();
+        dictionary.intern(Set.of(index("key1", "value1")));
+
+        var ids = dictionary.intern(Set.of(index("key3", "value3"), index("key2", "value2"), index("key1", "value1")));
+
+        assertEquals(3, ids.length);
+        assertEquals(0, ids[0]);
+        assertEquals(Set.of(1, 2), Set.of(ids[1], ids[2]));
+        assertEquals(Set.of(index("key1", "value1"), index("key2", "value2"), index("key3", "value3")),
+                     dictionary.indices(ids));
+    }
+
+    @Test
+    void internDeduplicatesIndices() {
+        var dictionary = new IndexDictionary();
+        var first = dictionary.intern(Set.of(index("eventType", "CourseCreated")));
+        var second = dictionary.intern(Set.of(index("eventType", "CourseCreated")));
+
+        assertArrayEquals(first, second);
+        assertSame(dictionary.indices(first).iterator().next(), dictionary.indices(second).iterator().next());
+    }
+
+    @Test
+    void unknownIndex() {
+        var dictionary = new IndexDictionary();
+        dictionary.intern(Set.of(index("key", "value")));
+
+        assertEquals(0, dictionary.id(index("key", "value")));
+        assertEquals(IndexDictionary.UNKNOWN, dictionary.id(index("key", "other")));
+    }
+
+    @Test
+    void manyIndices() {
+        var dictionary = new IndexDictionary();
+        for (int i = 0; i < 1_000; i++) {
+            assertArrayEquals(new int[]{i}, dictionary.intern(Set.of(index("key", String.valueOf(i)))));
+        }
+        assertEquals(Set.of(index("key", "999")), dictionary.indices(new int[]{999}));
+    }
+}
@@ -0,0 +1,49 @@
+package io.event.thinking.eventstore.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class OffHeapPayloadStoreTest {
+
+    @Test
+    void emptyPayload() {
+        var payloadStore = new OffHeapPayloadStore();
+        payloadStore.append(0L, new byte[0]);
+
+        assertArrayEquals(new byte[0], payloadStore.get(0L));
+    }
+
+    @Test
+    void payloadsSpanningMultipleChunks() {
+        var random = new Random(42);
+        var payloadStore = new OffHeapPayloadStore();
+        var payloads = new byte[40][];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = new byte[random.nextInt(1024 * 1024)];
+            random.nextBytes(payloads[i]);
+            payloadStore.append(i, payloads[i]);
+        }
+
+        for (int i = 0; i < payloads.length; i++) {
+            assertArrayEquals(payloads[i], payloadStore.get(i));
+        }
+    }
+
+    @Test
+    void payloadLargerThanChunk() {
+        var payloadStore = new OffHeapPayloadStore();
+        var small = new byte[]{1, 2, 3};
+        var large = new byte[20 * 1024 * 1024];
+        large[large.length - 1] = 42;
+        payloadStore.append(0L, small);
+        payloadStore.append(1L, large);
+        payloadStore.append(2L, small);
+
+        assertArrayEquals(small, payloadStore.get(0L));
+        assertArrayEquals(large, payloadStore.get(1L));
+        assertArrayEquals(small, payloadStore.get(2L));
+    }
+}
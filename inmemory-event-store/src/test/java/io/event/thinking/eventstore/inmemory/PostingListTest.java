@@ -0,0 +1,130 @@
+package io.event.thinking.eventstore.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static io.event.thinking.eventstore.inmemory.ReverseSequenceCursor.START;
+import static io.event.thinking.eventstore.inmemory.SequenceCursor.END;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostingListTest {
+
+    @Test
+    void emptyList() {
+        var cursor = new PostingList().cursor();
+
+        assertEquals(END, cursor.advance(0L));
+        assertEquals(END, cursor.advance(1L));
+    }
+
+    @Test
+    void iterateAll() {
+        var postingList = new PostingList();
+        int count = 3 * PostingList.BLOCK_SIZE + 5;
+        for (int i = 0; i < count; i++) {
+            postingList.append(i * 3L);
+        }
+
+        var cursor = postingList.cursor();
+        long sequence = cursor.advance(0L);
+        for (int i = 0; i < count; i++) {
+            assertEquals(i * 3L, sequence);
+            sequence = cursor.advance(sequence + 1);
+        }
+        assertEquals(END, sequence);
+        assertEquals(count, postingList.size());
+    }
+
+    @Test
+    void seekMatchesSortedSet() {
+        var random = new Random(42);
+        var postingList = new PostingList();
+        var expected = new TreeSet<Long>();
+        long sequence = 0;
+        for (int i = 0; i < 10_000; i++) {
+            sequence += 1 + random.nextInt(i % 2 == 0 ? 10 : 100_000);
+            postingList.append(sequence);
+            expected.add(sequence);
+        }
+
+        var cursor = postingList.cursor();
+        long target = -1;
+        while (target < sequence + 10) {
+            target += random.nextInt(50_000);
+            Long ceiling = expected.ceiling(target);
+            assertEquals(ceiling == null ? END : ceiling, cursor.advance(target));
+        }
+    }
+
+    @Test
+    void reverseSeekMatchesSortedSet() {
+        var random = new Random(42);
+        var postingList = new PostingList();
+        var expected = new TreeSet<Long>();
+        long sequence = 0;
+        for (int i = 0; i < 10_000; i++) {
+            sequence += 1 + random.nextInt(i % 2 == 0 ? 10 : 100_000);
+            postingList.append(sequence);
+            expected.add(sequence);
+        }
+
+        assertEquals(START, new PostingList().reverseCursor().retreat(Long.MAX_VALUE));
+        var cursor = postingList.reverseCursor();
+        long target = sequence + 10;
+        while (target >= 0) {
+            Long floor = expected.floor(target);
+            assertEquals(floor == null ? START : floor, cursor.retreat(target));
+            target -= random.nextInt(50_000);
+        }
+        assertEquals(START, cursor.retreat(-1L));
+    }
+
+    @Test
+    void rankMatchesSortedSet() {
+        var random = new Random(42);
+        var postingList = new PostingList();
+        var expected = new TreeSet<Long>();
+        long sequence = 0;
+        for (int i = 0; i < 10_000; i++) {
+            sequence += 1 + random.nextInt(i % 2 == 0 ? 10 : 100_000);
+            postingList.append(sequence);
+            expected.add(sequence);
+        }
+
+        assertEquals(0, new PostingList().rank(Long.MAX_VALUE));
+        for (long target = -1; target < sequence + 10; target += random.nextInt(50_000)) {
+            assertEquals(expected.headSet(target).size(), postingList.rank(target));
+        }
+        assertEquals(expected.size(), postingList.rank(Long.MAX_VALUE));
+    }
+
+    @Test
+    void cursorDoesNotSeeLaterAppends() {
+        var postingList = new PostingList();
+        postingList.append(1L);
+        var cursor = postingList.cursor();
+        postingList.append(2L);
+
+        assertEquals(1L, cursor.advance(0L));
+        assertEquals(END, cursor.advance(2L));
+    }
+
+    @Test
+    void bytesPerPosting() {
+        var random = new Random(42);
+        var postingList = new PostingList();
+        int count = 1_000_000;
+        long sequence = 0;
+        for (int i = 0; i < count; i++) {
+            sequence += 1 + random.nextInt(100);
+            postingList.append(sequence);
+        }
+
+        double bytesPerPosting = (double) postingList.sizeInBytes() / count;
+        System.out.printf("Posting list of %d sequences takes %.2f bytes per posting%n", count, bytesPerPosting);
+        assertTrue(bytesPerPosting < 2.0, "Expected less than 2 bytes per posting, but was " + bytesPerPosting);
+    }
+}
@@ -0,0 +1,84 @@
+package io.event.thinking.eventstore.inmemory;
+
+import io.event.thinking.eventstore.api.Index;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.event.thinking.eventstore.api.Criteria.anyOf;
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Index.index;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubscriptionRegistryTest {
+
+    private final IndexDictionary dictionary = new IndexDictionary();
+
+    @Test
+    void eventIsRoutedOnlyToMatchingSubscribers() {
+        var registry = new SubscriptionRegistry(dictionary, index -> 0);
+        var course = new AtomicInteger();
+        var student = new AtomicInteger();
+        var subscribedStudent = new AtomicInteger();
+        registry.register(anyOf(allOf(index("courseId", "course-1"))), course::incrementAndGet);
+        registry.register(anyOf(allOf(index("studentId", "student-1"))), student::incrementAndGet);
+        registry.register(anyOf(allOf(index("eventType", "StudentSubscribed"), index("studentId", "student-1"))),
+                          subscribedStudent::incrementAndGet);
+
+        registry.dispatch(dictionary.intern(Set.of(index("eventType", "StudentUnsubscribed"),
+                                                   index("courseId", "course-1"),
+                                                   index("studentId", "student-1"))));
+        registry.dispatch(dictionary.intern(Set.of(index("eventType", "StudentSubscribed"),
+                                                   index("courseId", "course-2"),
+                                                   index("studentId", "student-2"))));
+
+        assertEquals(1, course.get());
+        assertEquals(1, student.get());
+        assertEquals(0, subscribedStudent.get());
+    }
+
+    @Test
+    void criterionOfIndicesNotYetInternedMatchesLaterEvents() {
+        var frequencies = Map.of(index("eventType", "StudentSubscribed"), 1_000);
+        var registry = new SubscriptionRegistry(dictionary, index -> frequencies.getOrDefault(index, 0));
+        var notifications = new AtomicInteger();
+        registry.register(anyOf(allOf(index("eventType", "StudentSubscribed"), index("studentId", "student-1"))),
+                          notifications::incrementAndGet);
+
+        for (int i = 0; i < 100; i++) {
+            registry.dispatch(dictionary.intern(Set.of(index("eventType", "StudentSubscribed"),
+                                                       index("studentId", "student-" + i))));
+        }
+
+        assertEquals(1, notifications.get());
+    }
+
+    @Test
+    void unfilteredSubscribersAreNotifiedPerCommit() {
+        var registry = new SubscriptionRegistry(dictionary, index -> 0);
+        var notifications = new AtomicInteger();
+        registry.register(null, notifications::incrementAndGet);
+
+        registry.dispatch(dictionary.intern(Set.of(index("key", "value"))));
+        registry.dispatchCommit();
+
+        assertEquals(1, notifications.get());
+    }
+
+    @Test
+    void disposedRegistrationIsNotNotified() {
+        var registry = new SubscriptionRegistry(dictionary, index -> 0);
+        var notifications = new AtomicInteger();
+        Index index = index("key", "value");
+        var registration = registry.register(anyOf(allOf(index)), notifications::incrementAndGet);
+
+        registration.dispose();
+        registry.dispatch(dictionary.intern(Set.of(index)));
+
+        assertEquals(0, notifications.get());
+        assertTrue(registry.isEmpty());
+    }
+}
@@ -1,8 +1,11 @@
 package io.event.thinking.micro.es;
 
 import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.Index;
 
 import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * The command handler specific to DCB concept since it uses the {@link Criteria} to define which events are necessary
@@ -23,6 +26,32 @@ public interface DcbCommandHandler<C, S> {
      */
     Criteria criteria(C command);
 
+    /**
+     * Tells, by their indices, which events matching the {@link #criteria(Object) criteria} change the state. Criteria
+     * often cover events which only take part in the consistency check of the decision. Payloads of events this filter
+     * rejects are neither loaded from the event store nor deserialized, and such events are not
+     * {@link #source(Object, Object) sourced}.
+     *
+     * @return the filter of sourced events, or {@code null} if all events matching the criteria are sourced
+     */
+    default Predicate<Set<Index>> sourcedEvents() {
+        return null;
+    }
+
+    /**
+     * Tells whether the sourced state can be reused for later commands, when the command bus caches states, and for
+     * retries of a command. A reused state is handed to many commands, possibly at the same time, and only events
+     * appended since it was sourced are applied onto it. Only handlers whose state is immutable, so that neither
+     * {@link #source(Object, Object) sourcing} nor {@link #handle(Object, Object) handling} changes it in place, and
+     * depends on nothing but the sourced events, should return {@code true}. States of other handlers are sourced anew
+     * for every command, and for every retry.
+     *
+     * @return {@code true} if the sourced state can be reused, {@code false} by default
+     */
+    default boolean reusableState() {
+        return false;
+    }
+
     /**
      * The initial state used as a starting point for applying the sourced events.
      *
@@ -2,6 +2,8 @@ package io.event.thinking.micro.es;
 
 import io.event.thinking.eventstore.api.Criteria;
 import io.event.thinking.eventstore.api.EventStore;
+import io.event.thinking.eventstore.api.IndexedEvent;
+import io.event.thinking.eventstore.api.InvalidConsistencyConditionException;
 import io.event.thinking.eventstore.api.SequencedEvent;
 import reactor.core.publisher.Mono;
 
@@ -15,13 +17,36 @@ import static io.event.thinking.eventstore.api.Event.event;
 
 /**
  * The implementation of {@link CommandBus} that keeps handlers locally.
+ * <p>
+ * Command models are sourced from batches of events. Handlers {@link DcbCommandHandler#sourcedEvents() filtering}
+ * sourced events are given events read without payloads instead, and only payloads of events passing the filter are
+ * loaded and deserialized.
+ * </p>
+ * <p>
+ * Optionally, sourced command models are kept in a {@link StateCache}, per handler and {@link Criteria}, together with
+ * the consistency marker they are sourced up to. The next command sourcing the same model then only reads events
+ * appended after that marker, and applies them onto the cached model. Only models of handlers opting in with
+ * {@link DcbCommandHandler#reusableState()} are cached.
+ * </p>
+ * <p>
+ * A decision rejected because of events appended after the model was sourced can be retried according to a
+ * {@link RetryPolicy}. A retry sources only the events appended in the meantime onto the already sourced model, and
+ * lets the handler decide again.
+ * </p>
  */
 public class LocalCommandBus implements CommandBus {
 
-    @SuppressWarnings("rawtypes")
-    private final Map<Class, DcbCommandHandler> handlers = new ConcurrentHashMap<>();
+    /**
+     * The default number of events sourced per batch read from the Event Store.
+     */
+    public static final int DEFAULT_SOURCING_BATCH_SIZE = 256;
+
+    private final Map<Class<?>, DcbCommandHandler<?, ?>> handlers = new ConcurrentHashMap<>();
     private final EventStore eventStore;
     private final Serializer serializer;
+    private final int sourcingBatchSize;
+    private final StateCache stateCache;
+    private final RetryPolicy retryPolicy;
 
     /**
      * Instantiates this bus with the given {@code eventStore} and uses Java serializer.
@@ -40,29 +65,162 @@ public class LocalCommandBus implements CommandBus {
      * @param serializer the serializer
      */
     public LocalCommandBus(EventStore eventStore, Serializer serializer) {
+        this(eventStore, serializer, DEFAULT_SOURCING_BATCH_SIZE);
+    }
+
+    /**
+     * Instantiates this bus with the given {@code eventStore} and {@code serializer}, sourcing command models from
+     * batches of up to {@code sourcingBatchSize} events.
+     *
+     * @param eventStore        the event store
+     * @param serializer        the serializer
+     * @param sourcingBatchSize the maximum number of events read from the event store in a single batch
+     */
+    public LocalCommandBus(EventStore eventStore, Serializer serializer, int sourcingBatchSize) {
+        this(eventStore, serializer, sourcingBatchSize, 0);
+    }
+
+    /**
+     * Instantiates this bus with the given {@code eventStore} and {@code serializer}, sourcing command models from
+     * batches of up to {@code sourcingBatchSize} events, and caching up to {@code stateCacheSize} sourced command
+     * models. Commands are not retried.
+     *
+     * @param eventStore        the event store
+     * @param serializer        the serializer
+     * @param sourcingBatchSize the maximum number of events read from the event store in a single batch
+     * @param stateCacheSize    the maximum number of cached command models, {@code 0} disables caching
+     */
+    public LocalCommandBus(EventStore eventStore, Serializer serializer, int sourcingBatchSize, int stateCacheSize) {
+        this(eventStore, serializer, sourcingBatchSize, stateCacheSize, RetryPolicy.noRetries());
+    }
+
+    /**
+     * Instantiates this bus with the given {@code eventStore} and {@code serializer}, sourcing command models from
+     * batches of up to {@code sourcingBatchSize} events, and caching up to {@code stateCacheSize} sourced command
+     * models. The least recently used model is evicted from a full cache. Commands whose decisions are rejected
+     * because of conflicting appends are retried according to the {@code retryPolicy}.
+     *
+     * @param eventStore        the event store
+     * @param serializer        the serializer
+     * @param sourcingBatchSize the maximum number of events read from the event store in a single batch
+     * @param stateCacheSize    the maximum number of cached command models, {@code 0} disables caching
+     * @param retryPolicy       the policy of retrying commands rejected because of conflicting appends
+     */
+    public LocalCommandBus(EventStore eventStore,
+                           Serializer serializer,
+                           int sourcingBatchSize,
+                           int stateCacheSize,
+                           RetryPolicy retryPolicy) {
+        if (sourcingBatchSize < 1) {
+            throw new IllegalArgumentException("sourcingBatchSize must be positive");
+        }
+        if (stateCacheSize < 0) {
+            throw new IllegalArgumentException("stateCacheSize must not be negative");
+        }
+        if (retryPolicy == null) {
+            throw new IllegalArgumentException("retryPolicy must not be null");
+        }
         this.eventStore = eventStore;
         this.serializer = serializer;
+        this.sourcingBatchSize = sourcingBatchSize;
+        this.stateCache = stateCacheSize > 0 ? new StateCache(stateCacheSize) : null;
+        this.retryPolicy = retryPolicy;
     }
 
     @Override
     public <T> Mono<Long> dispatch(T command) {
-        return Mono.just(Optional.ofNullable(handlers.get(command.getClass()))
+        return Mono.just(Optional.ofNullable(handler(command))
                                  .orElseThrow(() -> new RuntimeException("No model found for " + command.getClass())))
-                   .flatMap(handler -> {
-                       var model = handler.initialState();
-                       //noinspection unchecked
-                       var criteria = handler.criteria(command);
-                       var result = eventStore.read(criteria);
-                       var consistencyMarker = result.consistencyMarker();
-                       //noinspection unchecked
-                       return result.flux()
-                                    .map(SequencedEvent::event)
-                                    .map(this::deserialize)
-                                    .reduce(model, (m, event) -> handler.source(event.payload(), m))
-                                    .map(sourcedModel -> handler.handle(command, sourcedModel))
-                                    .map(this::serialize)
-                                    .flatMap(events -> publishEvents(events, consistencyMarker, criteria));
-                   });
+                   .flatMap(handler -> dispatch(handler, command));
+    }
+
+    /**
+     * @return the handler registered for the type of the {@code command}, or {@code null} if there is none
+     */
+    @SuppressWarnings("unchecked")
+    private <C> DcbCommandHandler<C, ?> handler(C command) {
+        // handlers are registered by the type of commands they handle
+        return (DcbCommandHandler<C, ?>) handlers.get(command.getClass());
+    }
+
+    /**
+     * Dispatches the {@code command} to the {@code handler}, starting from its cached state, if there is one.
+     */
+    private <C, S> Mono<Long> dispatch(DcbCommandHandler<C, S> handler, C command) {
+        var criteria = handler.criteria(command);
+        var cache = handler.reusableState() ? stateCache : null;
+        var sourced = cache != null
+                ? cache.get(handler, criteria)
+                : new SourcedState<>(0L, handler.initialState());
+        return attempt(handler, command, criteria, cache, sourced, 1);
+    }
+
+    /**
+     * Sources the model of the {@code handler} from events appended after the {@code sourced} state onto it, and lets
+     * the {@code handler} decide on the {@code command}. If the decision is rejected because of events appended in the
+     * meantime, the command is retried according to the {@link RetryPolicy}, sourcing only those events if the state
+     * is {@link DcbCommandHandler#reusableState() reusable}.
+     */
+    private <C, S> Mono<Long> attempt(DcbCommandHandler<C, S> handler,
+                                      C command,
+                                      Criteria criteria,
+                                      StateCache cache,
+                                      SourcedState<S> sourced,
+                                      int attempt) {
+        return source(handler, criteria, sourced)
+                .doOnNext(state -> {
+                    if (cache != null) {
+                        cache.put(handler, criteria, state);
+                    }
+                })
+                .flatMap(state -> decide(handler, command, criteria, state)
+                        .onErrorResume(InvalidConsistencyConditionException.class, e -> {
+                            if (attempt >= retryPolicy.maxAttempts()) {
+                                return Mono.error(e);
+                            }
+                            var retryFrom = handler.reusableState()
+                                    ? state
+                                    : new SourcedState<>(0L, handler.initialState());
+                            var retry = Mono.defer(() -> attempt(handler, command, criteria, cache, retryFrom,
+                                                                 attempt + 1));
+                            var backoff = retryPolicy.backoff(attempt);
+                            return backoff.isZero() ? retry : Mono.delay(backoff).then(retry);
+                        }));
+    }
+
+    /**
+     * Sources the model of the {@code handler} from events matching the {@code criteria} appended after the
+     * {@code sourced} state, applying them onto it.
+     */
+    private <S> Mono<SourcedState<S>> source(DcbCommandHandler<?, S> handler,
+                                             Criteria criteria,
+                                             SourcedState<S> sourced) {
+        var sourcedEvents = handler.sourcedEvents();
+        if (sourcedEvents == null) {
+            var result = eventStore.readBatches(sourced.consistencyMarker(), criteria, sourcingBatchSize);
+            return result.flux()
+                         .reduce(sourced.model(), (m, batch) -> source(handler, batch, m))
+                         .map(model -> new SourcedState<>(result.consistencyMarker(), model));
+        }
+        var result = eventStore.readIndexed(sourced.consistencyMarker(), criteria);
+        return result.flux()
+                     .filter(event -> sourcedEvents.test(event.indices()))
+                     .reduce(sourced.model(), (m, event) -> source(handler, event, m))
+                     .map(model -> new SourcedState<>(result.consistencyMarker(), model));
+    }
+
+    /**
+     * Lets the {@code handler} decide on the {@code command} with its {@code sourced} model, and appends the resulting
+     * events on the condition that no events matching the {@code criteria} were appended after the model was sourced.
+     */
+    private <C, S> Mono<Long> decide(DcbCommandHandler<C, S> handler,
+                                     C command,
+                                     Criteria criteria,
+                                     SourcedState<S> sourced) {
+        return Mono.just(sourced)
+                   .map(state -> handler.handle(command, state.model()))
+                   .map(this::serialize)
+                   .flatMap(events -> publishEvents(events, sourced.consistencyMarker(), criteria));
     }
 
     @Override
@@ -70,6 +228,23 @@ public class LocalCommandBus implements CommandBus {
         handlers.put(commandType, handler);
     }
 
+    /**
+     * Applies a {@code batch} of events to the {@code model} of the {@code handler}.
+     */
+    private <S> S source(DcbCommandHandler<?, S> handler, List<SequencedEvent> batch, S model) {
+        for (SequencedEvent sequencedEvent : batch) {
+            model = handler.source(deserialize(sequencedEvent.event()).payload(), model);
+        }
+        return model;
+    }
+
+    /**
+     * Applies the {@code event} to the {@code model} of the {@code handler}, loading its payload.
+     */
+    private <S> S source(DcbCommandHandler<?, S> handler, IndexedEvent event, S model) {
+        return handler.source(serializer.deserialize(event.payload().get()), model);
+    }
+
     private Event deserialize(io.event.thinking.eventstore.api.Event e) {
         Object payload = serializer.deserialize(e.payload());
         return Event.event(e.indices(), payload);
@@ -0,0 +1,83 @@
+package io.event.thinking.micro.es;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Policy of retrying commands whose decisions are rejected by the event store, because events matching the criteria of
+ * the command were appended after its model was sourced. The backoff doubles with each retry, starting from
+ * {@code minBackoff} up to {@code maxBackoff}, and is shortened by a random part of up to {@code jitter} of it, so that
+ * contending commands spread their retries.
+ *
+ * @param maxAttempts the maximum number of attempts to decide on a command, the first one included. {@code 1} means
+ *                    that commands are not retried.
+ * @param minBackoff  the backoff before the first retry
+ * @param maxBackoff  the maximum backoff before a retry
+ * @param jitter      the maximum part of the backoff, between {@code 0} and {@code 1}, randomly cut from it
+ */
+public record RetryPolicy(int maxAttempts, Duration minBackoff, Duration maxBackoff, double jitter) {
+
+    /**
+     * Validates the policy.
+     */
+    public RetryPolicy {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        if (minBackoff == null || minBackoff.isNegative()) {
+            throw new IllegalArgumentException("minBackoff must not be negative");
+        }
+        if (maxBackoff == null || maxBackoff.compareTo(minBackoff) < 0) {
+            throw new IllegalArgumentException("maxBackoff must not be shorter than minBackoff");
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+    }
+
+    /**
+     * Factory method for the {@link RetryPolicy} which does not retry commands.
+     *
+     * @return the policy without retries
+     */
+    public static RetryPolicy noRetries() {
+        return new RetryPolicy(1, Duration.ZERO, Duration.ZERO, 0);
+    }
+
+    /**
+     * Factory method for the {@link RetryPolicy} which makes up to {@code maxAttempts} attempts, with the backoff
+     * doubling from {@code minBackoff} up to {@code maxBackoff}, and up to half of it cut randomly.
+     *
+     * @param maxAttempts the maximum number of attempts, the first one included
+     * @param minBackoff  the backoff before the first retry
+     * @param maxBackoff  the maximum backoff before a retry
+     * @return the policy
+     */
+    public static RetryPolicy retryPolicy(int maxAttempts, Duration minBackoff, Duration maxBackoff) {
+        return new RetryPolicy(maxAttempts, minBackoff, maxBackoff, 0.5);
+    }
+
+    /**
+     * Creates a copy of this policy with given {@code jitter}.
+     *
+     * @param jitter the maximum part of the backoff randomly cut from it
+     * @return the new policy
+     */
+    public RetryPolicy withJitter(double jitter) {
+        return new RetryPolicy(maxAttempts, minBackoff, maxBackoff, jitter);
+    }
+
+    /**
+     * Computes the jittered backoff before the given {@code retry}.
+     *
+     * @param retry the number of the retry, starting from {@code 1}
+     * @return the backoff
+     */
+    Duration backoff(int retry) {
+        long min = minBackoff.toNanos();
+        long max = maxBackoff.toNanos();
+        long backoff = retry > 62 || min > max >> (retry - 1) ? max : Math.min(min << (retry - 1), max);
+        double cut = jitter * ThreadLocalRandom.current().nextDouble();
+        return Duration.ofNanos((long) (backoff * (1 - cut)));
+    }
+}
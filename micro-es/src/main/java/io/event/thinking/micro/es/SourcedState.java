@@ -0,0 +1,12 @@
+package io.event.thinking.micro.es;
+
+/**
+ * A command model sourced from events up to the {@code consistencyMarker}, exclusively.
+ *
+ * @param consistencyMarker the consistency marker the model is sourced up to
+ * @param model             the sourced model
+ * @param <S>               the type of the model
+ */
+record SourcedState<S>(long consistencyMarker, S model) {
+
+}
@@ -0,0 +1,73 @@
+package io.event.thinking.micro.es;
+
+import io.event.thinking.eventstore.api.Criteria;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of sourced states of {@link DcbCommandHandler command handlers}. A state is cached per
+ * handler and {@link Criteria} together with the consistency marker it was sourced up to, so that the next sourcing
+ * only reads events appended after the marker and applies them onto the cached state.
+ * <p>
+ * The cache holds at most {@code maximumSize} states, evicting the least recently used one when full. It is safe to use
+ * from many threads.
+ * </p>
+ */
+class StateCache {
+
+    private final Map<Key, SourcedState<?>> states;
+
+    /**
+     * Instantiates an empty cache holding at most {@code maximumSize} states.
+     *
+     * @param maximumSize the maximum number of cached states
+     */
+    StateCache(int maximumSize) {
+        this.states = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SourcedState<?>> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the state of the {@code handler} sourced from events matching the {@code criteria}, or the initial state
+     * of the {@code handler} at the consistency marker {@code 0} if there is no such state in the cache.
+     *
+     * @param handler  the command handler
+     * @param criteria the criteria of sourced events
+     * @param <S>      the type of the state
+     * @return the cached state
+     */
+    @SuppressWarnings("unchecked")
+    <S> SourcedState<S> get(DcbCommandHandler<?, S> handler, Criteria criteria) {
+        SourcedState<?> state;
+        synchronized (states) {
+            state = states.get(new Key(handler, criteria));
+        }
+        // states are cached per handler, so a cached state is always sourced by the given handler
+        return state != null ? (SourcedState<S>) state : new SourcedState<>(0L, handler.initialState());
+    }
+
+    /**
+     * Caches the {@code state} of the {@code handler} sourced from events matching the {@code criteria}, unless a state
+     * sourced up to a later consistency marker is cached already.
+     *
+     * @param handler  the command handler
+     * @param criteria the criteria of sourced events
+     * @param state    the sourced state
+     */
+    <S> void put(DcbCommandHandler<?, S> handler, Criteria criteria, SourcedState<S> state) {
+        synchronized (states) {
+            states.merge(new Key(handler, criteria),
+                         state,
+                         (current, next) -> current.consistencyMarker() > next.consistencyMarker() ? current : next);
+        }
+    }
+
+    private record Key(DcbCommandHandler<?, ?> handler, Criteria criteria) {
+
+    }
+}
@@ -0,0 +1,323 @@
+package io.event.thinking.micro.es;
+
+import io.event.thinking.eventstore.api.ConsistencyCondition;
+import io.event.thinking.eventstore.api.Criteria;
+import io.event.thinking.eventstore.api.EventStore;
+import io.event.thinking.eventstore.api.Index;
+import io.event.thinking.eventstore.api.InvalidConsistencyConditionException;
+import io.event.thinking.eventstore.api.MarkedEventBatches;
+import io.event.thinking.eventstore.api.MarkedEvents;
+import io.event.thinking.eventstore.api.MarkedIndexedEvents;
+import io.event.thinking.eventstore.api.SequencedEvent;
+import io.event.thinking.eventstore.inmemory.InMemoryEventStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.event.thinking.eventstore.api.Criteria.anyOf;
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Index.index;
+import static io.event.thinking.micro.es.LocalCommandBus.DEFAULT_SOURCING_BATCH_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocalCommandBusTest {
+
+    private final Serializer serializer = new Serializer() {
+    };
+    private RecordingEventStore eventStore;
+
+    @BeforeEach
+    void setUp() {
+        eventStore = new RecordingEventStore(new InMemoryEventStore());
+    }
+
+    @Test
+    void cachedStateIsSourcedOnlyFromEventsAfterItsMarker() {
+        var commandBus = new LocalCommandBus(eventStore, serializer, DEFAULT_SOURCING_BATCH_SIZE, 8);
+        var handler = new SubscriptionHandler(true);
+        commandBus.register(Subscribe.class, handler);
+
+        appendSubscription("course-1");
+        appendSubscription("course-1");
+        appendSubscription("course-1");
+
+        dispatch(commandBus, "course-1", 3L);
+        appendSubscription("course-1");
+        dispatch(commandBus, "course-1", 5L);
+
+        assertEquals(List.of(0L, 3L), eventStore.reads());
+        assertEquals(List.of(3, 5), handler.decidedStates());
+        // the three events before the first command are sourced only once
+        assertEquals(5, handler.sourced());
+    }
+
+    @Test
+    void leastRecentlyUsedStateIsEvicted() {
+        var commandBus = new LocalCommandBus(eventStore, serializer, DEFAULT_SOURCING_BATCH_SIZE, 1);
+        var handler = new SubscriptionHandler(true);
+        commandBus.register(Subscribe.class, handler);
+
+        dispatch(commandBus, "course-1", 0L);
+        dispatch(commandBus, "course-2", 1L);
+        dispatch(commandBus, "course-1", 2L);
+        dispatch(commandBus, "course-1", 3L);
+
+        assertEquals(List.of(0L, 0L, 0L, 2L), eventStore.reads());
+        assertEquals(List.of(0, 0, 1, 2), handler.decidedStates());
+    }
+
+    @Test
+    void zeroStateCacheSizeDisablesCaching() {
+        var commandBus = new LocalCommandBus(eventStore, serializer, DEFAULT_SOURCING_BATCH_SIZE);
+        var handler = new SubscriptionHandler(true);
+        commandBus.register(Subscribe.class, handler);
+
+        dispatch(commandBus, "course-1", 0L);
+        dispatch(commandBus, "course-1", 1L);
+
+        assertEquals(List.of(0L, 0L), eventStore.reads());
+        assertEquals(List.of(0, 1), handler.decidedStates());
+    }
+
+    @Test
+    void statesAreNotCachedUnlessHandlersOptIn() {
+        var commandBus = new LocalCommandBus(eventStore, serializer, DEFAULT_SOURCING_BATCH_SIZE, 8);
+        var handler = new SubscriptionHandler(false);
+        commandBus.register(Subscribe.class, handler);
+
+        dispatch(commandBus, "course-1", 0L);
+        dispatch(commandBus, "course-1", 1L);
+
+        assertEquals(List.of(0L, 0L), eventStore.reads());
+        assertEquals(List.of(0, 1), handler.decidedStates());
+    }
+
+    @Test
+    void conflictingDecisionIsRetriedFromSourcedState() {
+        var commandBus = new LocalCommandBus(eventStore, serializer, DEFAULT_SOURCING_BATCH_SIZE, 0, noBackoff(3));
+        var handler = new SubscriptionHandler(true);
+        commandBus.register(Subscribe.class, handler);
+        appendSubscription("course-1");
+        appendSubscription("course-1");
+        appendSubscription("course-1");
+        var conflicts = new AtomicInteger(1);
+        handler.beforeDecision(() -> {
+            if (conflicts.getAndDecrement() > 0) {
+                appendConcurrentSubscription("course-1");
+            }
+        });
+
+        dispatch(commandBus, "course-1", 4L);
+
+        assertEquals(List.of(0L, 3L), eventStore.reads());
+        assertEquals(List.of(3, 4), handler.decidedStates());
+        assertEquals(4, handler.sourced());
+    }
+
+    @Test
+    void nonReusableStateIsSourcedAnewOnRetry() {
+        var commandBus = new LocalCommandBus(eventStore, serializer, DEFAULT_SOURCING_BATCH_SIZE, 0, noBackoff(3));
+        var handler = new SubscriptionHandler(false);
+        commandBus.register(Subscribe.class, handler);
+        appendSubscription("course-1");
+        var conflicts = new AtomicInteger(1);
+        handler.beforeDecision(() -> {
+            if (conflicts.getAndDecrement() > 0) {
+                appendConcurrentSubscription("course-1");
+            }
+        });
+
+        dispatch(commandBus, "course-1", 2L);
+
+        assertEquals(List.of(0L, 0L), eventStore.reads());
+        assertEquals(List.of(1, 2), handler.decidedStates());
+    }
+
+    @Test
+    void retriesStopAtMaxAttempts() {
+        var commandBus = new LocalCommandBus(eventStore, serializer, DEFAULT_SOURCING_BATCH_SIZE, 0, noBackoff(3));
+        var handler = new SubscriptionHandler(true);
+        commandBus.register(Subscribe.class, handler);
+        handler.beforeDecision(() -> appendConcurrentSubscription("course-1"));
+
+        StepVerifier.create(commandBus.dispatch(new Subscribe("course-1")))
+                    .verifyError(InvalidConsistencyConditionException.class);
+
+        assertEquals(List.of(0L, 0L, 1L), eventStore.reads());
+        assertEquals(List.of(0, 1, 2), handler.decidedStates());
+    }
+
+    @Test
+    void conflictingDecisionsAreNotRetriedByDefault() {
+        var commandBus = new LocalCommandBus(eventStore, serializer);
+        var handler = new SubscriptionHandler(true);
+        commandBus.register(Subscribe.class, handler);
+        handler.beforeDecision(() -> appendConcurrentSubscription("course-1"));
+
+        StepVerifier.create(commandBus.dispatch(new Subscribe("course-1")))
+                    .verifyError(InvalidConsistencyConditionException.class);
+
+        assertEquals(List.of(0L), eventStore.reads());
+        assertEquals(List.of(0), handler.decidedStates());
+    }
+
+    private static RetryPolicy noBackoff(int maxAttempts) {
+        return RetryPolicy.retryPolicy(maxAttempts, Duration.ZERO, Duration.ZERO);
+    }
+
+    private void dispatch(CommandBus commandBus, String courseId, long expectedSequence) {
+        StepVerifier.create(commandBus.dispatch(new Subscribe(courseId)))
+                    .expectNext(expectedSequence)
+                    .verifyComplete();
+    }
+
+    /**
+     * Appends a subscription to the course bypassing the command bus, like a concurrent command would.
+     */
+    private void appendSubscription(String courseId) {
+        eventStore.append(io.event.thinking.eventstore.api.Event.event(serializer.serialize(new Subscribed(courseId)),
+                                                                        courseIndex(courseId)))
+                  .block();
+    }
+
+    /**
+     * Queues a subscription to the course without waiting for it, as decisions may run on the appender of the Event
+     * Store. The Event Store appends in the order of submission, so the subscription conflicts with the decision.
+     */
+    private void appendConcurrentSubscription(String courseId) {
+        eventStore.append(io.event.thinking.eventstore.api.Event.event(serializer.serialize(new Subscribed(courseId)),
+                                                                        courseIndex(courseId)))
+                  .subscribe();
+    }
+
+    private static Index courseIndex(String courseId) {
+        return index("courseId", courseId);
+    }
+
+    private record Subscribe(String courseId) {
+
+    }
+
+    private record Subscribed(String courseId) implements Serializable {
+
+    }
+
+    /**
+     * Counts subscriptions to a course, and records the states it decides with.
+     */
+    private static class SubscriptionHandler implements DcbCommandHandler<Subscribe, Integer> {
+
+        private final boolean reusableState;
+        private final List<Integer> decidedStates = new CopyOnWriteArrayList<>();
+        private final AtomicInteger sourced = new AtomicInteger();
+        private volatile Runnable beforeDecision = () -> {
+        };
+
+        SubscriptionHandler(boolean reusableState) {
+            this.reusableState = reusableState;
+        }
+
+        /**
+         * Runs the {@code action} before every decision, like a concurrent command appending in the meantime would.
+         */
+        void beforeDecision(Runnable action) {
+            this.beforeDecision = action;
+        }
+
+        @Override
+        public Criteria criteria(Subscribe command) {
+            return anyOf(allOf(courseIndex(command.courseId())));
+        }
+
+        @Override
+        public boolean reusableState() {
+            return reusableState;
+        }
+
+        @Override
+        public Integer initialState() {
+            return 0;
+        }
+
+        @Override
+        public Integer source(Object event, Integer state) {
+            sourced.incrementAndGet();
+            return state + 1;
+        }
+
+        @Override
+        public List<Event> handle(Subscribe command, Integer state) {
+            decidedStates.add(state);
+            beforeDecision.run();
+            return List.of(Event.event(Set.of(courseIndex(command.courseId())), new Subscribed(command.courseId())));
+        }
+
+        List<Integer> decidedStates() {
+            return decidedStates;
+        }
+
+        int sourced() {
+            return sourced.get();
+        }
+    }
+
+    /**
+     * Records the sequences the command bus sources its models from.
+     */
+    private static class RecordingEventStore implements EventStore {
+
+        private final EventStore delegate;
+        private final List<Long> reads = new CopyOnWriteArrayList<>();
+
+        RecordingEventStore(EventStore delegate) {
+            this.delegate = delegate;
+        }
+
+        List<Long> reads() {
+            return reads;
+        }
+
+        @Override
+        public MarkedEvents read(long fromSequence, Criteria criteria) {
+            reads.add(fromSequence);
+            return delegate.read(fromSequence, criteria);
+        }
+
+        @Override
+        public MarkedEventBatches readBatches(long fromSequence, Criteria criteria, int batchSize) {
+            reads.add(fromSequence);
+            return delegate.readBatches(fromSequence, criteria, batchSize);
+        }
+
+        @Override
+        public MarkedIndexedEvents readIndexed(long fromSequence, Criteria criteria) {
+            reads.add(fromSequence);
+            return delegate.readIndexed(fromSequence, criteria);
+        }
+
+        @Override
+        public MarkedEvents readBackward(long fromSequence, Criteria criteria, int limit) {
+            return delegate.readBackward(fromSequence, criteria, limit);
+        }
+
+        @Override
+        public Flux<SequencedEvent> stream(long fromSequence, Criteria criteria) {
+            return delegate.stream(fromSequence, criteria);
+        }
+
+        @Override
+        public Mono<Long> append(List<io.event.thinking.eventstore.api.Event> events,
+                                 ConsistencyCondition consistencyCondition) {
+            return delegate.append(events, consistencyCondition);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.event.thinking.micro.es;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+
+    @Test
+    void backoffDoublesUpToMaxBackoff() {
+        var policy = RetryPolicy.retryPolicy(10, Duration.ofMillis(10), Duration.ofMillis(100))
+                                .withJitter(0);
+
+        assertEquals(Duration.ofMillis(10), policy.backoff(1));
+        assertEquals(Duration.ofMillis(20), policy.backoff(2));
+        assertEquals(Duration.ofMillis(40), policy.backoff(3));
+        assertEquals(Duration.ofMillis(80), policy.backoff(4));
+        assertEquals(Duration.ofMillis(100), policy.backoff(5));
+        assertEquals(Duration.ofMillis(100), policy.backoff(100));
+    }
+
+    @Test
+    void jitteredBackoffDoublesWithinJitterBounds() {
+        var policy = RetryPolicy.retryPolicy(10, Duration.ofMillis(10), Duration.ofSeconds(10))
+                                .withJitter(0.5);
+
+        for (int retry = 1; retry <= 8; retry++) {
+            var full = Duration.ofMillis(10L << (retry - 1));
+            boolean jittered = false;
+            for (int i = 0; i < 1_000; i++) {
+                var backoff = policy.backoff(retry);
+                assertTrue(backoff.compareTo(full.dividedBy(2)) >= 0, backoff + " is below half of " + full);
+                assertTrue(backoff.compareTo(full) <= 0, backoff + " exceeds " + full);
+                jittered |= backoff.compareTo(full) < 0;
+            }
+            assertTrue(jittered);
+        }
+    }
+
+    @Test
+    void noRetriesMakesSingleAttempt() {
+        assertEquals(1, RetryPolicy.noRetries().maxAttempts());
+    }
+
+    @Test
+    void invalidPoliciesAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> RetryPolicy.retryPolicy(0, Duration.ZERO, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                     () -> RetryPolicy.retryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(5)));
+        assertThrows(IllegalArgumentException.class,
+                     () -> RetryPolicy.retryPolicy(3, Duration.ZERO, Duration.ZERO).withJitter(1.5));
+    }
+}
@@ -0,0 +1,76 @@
+package io.event.thinking.micro.es;
+
+import io.event.thinking.eventstore.api.Criteria;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static io.event.thinking.eventstore.api.Criteria.anyOf;
+import static io.event.thinking.eventstore.api.Criterion.allOf;
+import static io.event.thinking.eventstore.api.Index.index;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StateCacheTest {
+
+    private final DcbCommandHandler<Object, String> handler = new DcbCommandHandler<>() {
+        @Override
+        public Criteria criteria(Object command) {
+            return null;
+        }
+
+        @Override
+        public String initialState() {
+            return "initial";
+        }
+
+        @Override
+        public String source(Object event, String state) {
+            return state;
+        }
+
+        @Override
+        public List<Event> handle(Object command, String state) {
+            return List.of();
+        }
+    };
+
+    @Test
+    void missReturnsInitialState() {
+        var cache = new StateCache(2);
+
+        assertEquals(new SourcedState<>(0L, "initial"), cache.get(handler, criteria("course-1")));
+    }
+
+    @Test
+    void stateSourcedUpToLaterMarkerIsKept() {
+        var cache = new StateCache(2);
+        var criteria = criteria("course-1");
+
+        cache.put(handler, criteria, new SourcedState<>(5L, "five"));
+        cache.put(handler, criteria, new SourcedState<>(3L, "three"));
+
+        assertEquals(new SourcedState<>(5L, "five"), cache.get(handler, criteria));
+
+        cache.put(handler, criteria, new SourcedState<>(7L, "seven"));
+
+        assertEquals(new SourcedState<>(7L, "seven"), cache.get(handler, criteria));
+    }
+
+    @Test
+    void leastRecentlyUsedStateIsEvicted() {
+        var cache = new StateCache(2);
+        cache.put(handler, criteria("course-1"), new SourcedState<>(1L, "course-1"));
+        cache.put(handler, criteria("course-2"), new SourcedState<>(2L, "course-2"));
+        cache.get(handler, criteria("course-1"));
+
+        cache.put(handler, criteria("course-3"), new SourcedState<>(3L, "course-3"));
+
+        assertEquals(new SourcedState<>(1L, "course-1"), cache.get(handler, criteria("course-1")));
+        assertEquals(new SourcedState<>(0L, "initial"), cache.get(handler, criteria("course-2")));
+        assertEquals(new SourcedState<>(3L, "course-3"), cache.get(handler, criteria("course-3")));
+    }
+
+    private static Criteria criteria(String courseId) {
+        return anyOf(allOf(index("courseId", courseId)));
+    }
+}